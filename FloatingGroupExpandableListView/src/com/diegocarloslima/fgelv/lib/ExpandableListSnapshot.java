@@ -0,0 +1,134 @@
+package com.diegocarloslima.fgelv.lib;
+
+// An immutable, array backed copy of the groups and children of an expandable list, with their ids and children counts computed beforehand.
+// It can be built on any thread with a Builder, and then published to a SnapshotExpandableListAdapter on the main thread
+public final class ExpandableListSnapshot {
+
+	static final ExpandableListSnapshot EMPTY = new Builder().build();
+
+	private final Object[] mGroups;
+	private final long[] mGroupIds;
+	// The children of all the groups are kept in the same arrays, the children of a group start at its offset
+	private final int[] mChildOffsets;
+	private final Object[] mChildren;
+	private final long[] mChildIds;
+
+	private ExpandableListSnapshot(Object[] groups, long[] groupIds, int[] childOffsets, Object[] children, long[] childIds) {
+		mGroups = groups;
+		mGroupIds = groupIds;
+		mChildOffsets = childOffsets;
+		mChildren = children;
+		mChildIds = childIds;
+	}
+
+	public int getGroupCount() {
+		return mGroups.length;
+	}
+
+	public int getChildrenCount(int groupPosition) {
+		return mChildOffsets[groupPosition + 1] - mChildOffsets[groupPosition];
+	}
+
+	public Object getGroup(int groupPosition) {
+		return mGroups[groupPosition];
+	}
+
+	public long getGroupId(int groupPosition) {
+		return mGroupIds[groupPosition];
+	}
+
+	public Object getChild(int groupPosition, int childPosition) {
+		return mChildren[mChildOffsets[groupPosition] + childPosition];
+	}
+
+	public long getChildId(int groupPosition, int childPosition) {
+		return mChildIds[mChildOffsets[groupPosition] + childPosition];
+	}
+
+	// The group ids of the snapshot, in order. A copy is returned, so it can be used for WrapperExpandableListAdapter.notifyGroupIdsChanged()
+	public long[] getGroupIds() {
+		final long[] groupIds = new long[mGroupIds.length];
+		System.arraycopy(mGroupIds, 0, groupIds, 0, mGroupIds.length);
+		return groupIds;
+	}
+
+	// Not thread safe, each Builder should only be used by one thread
+	public static class Builder {
+
+		private Object[] mGroups = new Object[16];
+		private long[] mGroupIds = new long[16];
+		private int[] mChildOffsets = new int[17];
+		private int mGroupCount;
+
+		private Object[] mChildren = new Object[16];
+		private long[] mChildIds = new long[16];
+		private int mChildCount;
+
+		// The group ids must be stable, since the expanded state is carried across snapshots by group id
+		public Builder addGroup(long groupId, Object group) {
+			if(mGroupCount == mGroups.length) {
+				final int capacity = mGroupCount * 2;
+				final Object[] groups = new Object[capacity];
+				final long[] groupIds = new long[capacity];
+				final int[] childOffsets = new int[capacity + 1];
+				System.arraycopy(mGroups, 0, groups, 0, mGroupCount);
+				System.arraycopy(mGroupIds, 0, groupIds, 0, mGroupCount);
+				System.arraycopy(mChildOffsets, 0, childOffsets, 0, mGroupCount + 1);
+				mGroups = groups;
+				mGroupIds = groupIds;
+				mChildOffsets = childOffsets;
+			}
+
+			mGroups[mGroupCount] = group;
+			mGroupIds[mGroupCount] = groupId;
+			mGroupCount++;
+			mChildOffsets[mGroupCount] = mChildCount;
+			return this;
+		}
+
+		// Adds a child to the last group added
+		public Builder addChild(long childId, Object child) {
+			if(mGroupCount == 0) {
+				throw new IllegalStateException("A group must be added before its children");
+			}
+
+			if(mChildCount == mChildren.length) {
+				final int capacity = mChildCount * 2;
+				final Object[] children = new Object[capacity];
+				final long[] childIds = new long[capacity];
+				System.arraycopy(mChildren, 0, children, 0, mChildCount);
+				System.arraycopy(mChildIds, 0, childIds, 0, mChildCount);
+				mChildren = children;
+				mChildIds = childIds;
+			}
+
+			mChildren[mChildCount] = child;
+			mChildIds[mChildCount] = childId;
+			mChildCount++;
+			mChildOffsets[mGroupCount] = mChildCount;
+			return this;
+		}
+
+		// The arrays are trimmed to their size, the Builder can't be used afterwards
+		public ExpandableListSnapshot build() {
+			final Object[] groups = new Object[mGroupCount];
+			final long[] groupIds = new long[mGroupCount];
+			final int[] childOffsets = new int[mGroupCount + 1];
+			final Object[] children = new Object[mChildCount];
+			final long[] childIds = new long[mChildCount];
+			System.arraycopy(mGroups, 0, groups, 0, mGroupCount);
+			System.arraycopy(mGroupIds, 0, groupIds, 0, mGroupCount);
+			System.arraycopy(mChildOffsets, 0, childOffsets, 0, mGroupCount + 1);
+			System.arraycopy(mChildren, 0, children, 0, mChildCount);
+			System.arraycopy(mChildIds, 0, childIds, 0, mChildCount);
+
+			mGroups = null;
+			mGroupIds = null;
+			mChildOffsets = null;
+			mChildren = null;
+			mChildIds = null;
+
+			return new ExpandableListSnapshot(groups, groupIds, childOffsets, children, childIds);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.diegocarloslima.fgelv.lib;
+
+import android.view.View;
+import android.widget.AdapterView;
+
+class FloatingGroup {
+
+	final int type;
+	View view;
+
+	// The state the view was bound with, it's only rebound when some of these change
+	int groupPosition = AdapterView.INVALID_POSITION;
+	boolean expanded;
+	int widthMeasureSpec;
+
+	// What the view was last measured for, measuring can be skipped when it's bound again for the same key and doesn't request a new layout.
+	// The key is either the group id or, when all the groups of a type have the same height, the group type
+	long measureKey;
+	int measuredWidthSpec;
+	int measureGeneration = -1;
+
+	// Whether the view has become clickable only because of the listener set by the FloatingGroupExpandableListView
+	boolean ownClickListener;
+
+	// The attach info that was set on the view tree, it's only set again when the list has another one
+	Object attachInfo;
+
+	// Created by the OnFloatingGroupScrollChangedListener for this view, it's only valid for the listener of the same generation
+	Object holder;
+	int holderGeneration;
+
+	FloatingGroup(int type) {
+		this.type = type;
+	}
+
+	boolean isBoundTo(int groupPosition, boolean expanded, int widthMeasureSpec) {
+		return view != null && this.groupPosition == groupPosition && this.expanded == expanded && this.widthMeasureSpec == widthMeasureSpec;
+	}
+
+	boolean isMeasuredFor(long measureKey, int widthSpec, int measureGeneration) {
+		return this.measureGeneration == measureGeneration && this.measureKey == measureKey && measuredWidthSpec == widthSpec && !view.isLayoutRequested();
+	}
+
+	void setMeasuredFor(long measureKey, int widthSpec, int measureGeneration) {
+		this.measureKey = measureKey;
+		measuredWidthSpec = widthSpec;
+		this.measureGeneration = measureGeneration;
+	}
+
+	void invalidate() {
+		groupPosition = AdapterView.INVALID_POSITION;
+	}
+}
@@ -1,14 +1,20 @@
 package com.diegocarloslima.fgelv.lib;
 
+import java.util.ArrayList;
+
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.DataSetObserver;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Rect;
-import android.graphics.RectF;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Parcelable;
 import android.util.AttributeSet;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.GestureDetector;
@@ -16,12 +22,25 @@ import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.AbsListView;
+import android.widget.BaseAdapter;
 import android.widget.ExpandableListAdapter;
 import android.widget.ExpandableListView;
 
 public class FloatingGroupExpandableListView extends ExpandableListView {
 
+	// The floating group is updated on every scroll event
+	public static final int FLOATING_GROUP_UPDATE_IMMEDIATE = 0;
+	// Scroll events are coalesced, so the floating group is updated at most once per frame, right before it's drawn
+	public static final int FLOATING_GROUP_UPDATE_PER_FRAME = 1;
+	// Same as FLOATING_GROUP_UPDATE_PER_FRAME, but while flinging the floating group is only repositioned (or rebound when its group changes)
+	// and the OnScrollFloatingGroupListener isn't called. A full update is done when the fling ends
+	public static final int FLOATING_GROUP_UPDATE_PER_FRAME_POSITION_ONLY_ON_FLING = 2;
+
+	// Doesn't match any item view type, so a row whose type can't be read is laid out again instead of being rebound
+	private static final int ITEM_VIEW_TYPE_UNKNOWN = Integer.MIN_VALUE;
+
 	private static final int[] EMPTY_STATE_SET = {};
 
 	// State indicating the group is expanded
@@ -43,35 +62,91 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 
 	private WrapperExpandableListAdapter mAdapter;
 	private DataSetObserver mDataSetObserver;
+	// Granular changes of the adapter only update the affected rows, and keep the floating group
+	private WrapperExpandableListAdapter.OnChangeListener mAdapterChangeListener;
 	private OnScrollListener mOnScrollListener;
+	private int mScrollState = OnScrollListener.SCROLL_STATE_IDLE;
+
+	private int mFloatingGroupUpdatePolicy = FLOATING_GROUP_UPDATE_IMMEDIATE;
+	// The first visible position of the last scroll event that wasn't handled yet, when the updates are coalesced
+	private int mPendingFloatingGroupUpdatePosition = INVALID_POSITION;
+	private ViewTreeObserver.OnPreDrawListener mOnPreDrawListener;
+	private ViewTreeObserver mPreDrawViewTreeObserver;
 
 	// By default, the floating group is enabled
 	private boolean mFloatingGroupEnabled = true;
 	private View mFloatingGroupView;
 	private int mFloatingGroupPosition;
+	// Cached for the current frame, so the selector drawing doesn't need to look it up again
+	private int mFloatingGroupFlatPosition = INVALID_POSITION;
 	private int mFloatingGroupScrollY;
 	private OnScrollFloatingGroupListener mOnScrollFloatingGroupListener;
+	private OnFloatingGroupScrollChangedListener mOnFloatingGroupScrollChangedListener;
+	private int mFloatingGroupHolderGeneration;
+	private int mDispatchedFloatingGroupScrollY;
+	private boolean mFloatingGroupScrollChangePending;
 	private OnGroupClickListener mOnGroupClickListener;
+	private OnGroupExpandListener mOnGroupExpandListener;
+	private OnGroupCollapseListener mOnGroupCollapseListener;
+
+	// The floating group is kept bound between scroll events, so it only needs to be repositioned while it doesn't change
+	private FloatingGroup mBoundFloatingGroup;
+	// Floating group views are pooled by group type outside the ListView recycler
+	private final FloatingGroupPool mFloatingGroupPool = new FloatingGroupPool();
+
+	// The floating groups before and after the current one are prepared on idle time, so crossing a group boundary doesn't need to bind them
+	private final ArrayList<FloatingGroup> mPreparedFloatingGroups = new ArrayList<FloatingGroup>(2);
+	private MessageQueue.IdleHandler mFloatingGroupPrefetchIdleHandler;
+	private boolean mFloatingGroupPrefetchScheduled;
 
     private int mWidthMeasureSpec;
 
+	// Measured floating group views are only measured again when their group (or group type, if heights are fixed per type) or the width change
+	private boolean mFloatingGroupHeightFixedPerType;
+	private int mFloatingGroupMeasureGeneration;
+
 	// An AttachInfo instance is added to the FloatingGroupView in order to have proper touch event handling
 	private Object mViewAttachInfo;
 	private boolean mHandledByOnInterceptTouchEvent;
 	private boolean mHandledByOnTouchEvent;
 	private Runnable mOnClickAction;
+	private View.OnClickListener mOnFloatingGroupClickListener;
 	private GestureDetector mGestureDetector;
 
 	private boolean mSelectorEnabled;
 	private boolean mShouldPositionSelector;
 	private boolean mDrawSelectorOnTop;
 	private Drawable mSelector;
-	private int mSelectorPosition;
+	// The position touched last, the selector is only drawn there while that row is pressed
+	private int mSelectorPosition = INVALID_POSITION;
+	private boolean mFloatingGroupSelectorPositioned;
 	private final Rect mSelectorRect = new Rect();
 	private Runnable mPositionSelectorOnTapAction;
 	private Runnable mClearSelectorOnTapAction;
 
+	// The group indicator of the floating group is only resolved again when the indicator, its bounds or the floating group change
 	private final Rect mIndicatorRect = new Rect();
+	private Drawable mGroupIndicator;
+	private Drawable mFloatingGroupIndicator;
+	private int mFloatingGroupIndicatorHeight = -1;
+	private boolean mFloatingGroupIndicatorDirty = true;
+	private boolean mFloatingGroupIndicatorStateDirty = true;
+
+	// While flinging, the floating group can be drawn once into a bitmap, which is then only translated on each frame
+	private boolean mFloatingGroupSnapshotEnabled;
+	private Bitmap mFloatingGroupSnapshot;
+	private final Canvas mFloatingGroupSnapshotCanvas = new Canvas();
+	private boolean mFloatingGroupSnapshotValid;
+	// Set once the floating group is touched during a fling, so it's drawn live, with its pressed state, until the fling ends
+	private boolean mFloatingGroupSnapshotSuspended;
+
+	// Only set when the client wants to collect metrics, so there's no cost otherwise
+	private FloatingGroupMetrics mFloatingGroupMetrics;
+
+	// The group view in the list that is covered by the floating group is hidden, only that one needs to be restored later
+	private View mHiddenGroupView;
+	private int mHiddenGroupFlatPosition = INVALID_POSITION;
+	private RecyclerListener mRecyclerListener;
 
 	public FloatingGroupExpandableListView(Context context) {
 		super(context);
@@ -93,6 +168,19 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 
 			@Override
 			public void onScrollStateChanged(AbsListView view, int scrollState) {
+				// A new snapshot is taken on each fling, since the floating group may have changed in the meantime
+				if(scrollState == SCROLL_STATE_FLING && mScrollState != SCROLL_STATE_FLING) {
+					mFloatingGroupSnapshotValid = false;
+					mFloatingGroupSnapshotSuspended = false;
+				}
+				// The floating group was only repositioned during the fling, so it's fully updated now
+				final boolean flingEnded = mScrollState == SCROLL_STATE_FLING && scrollState != SCROLL_STATE_FLING;
+				mScrollState = scrollState;
+				if(flingEnded && mFloatingGroupUpdatePolicy == FLOATING_GROUP_UPDATE_PER_FRAME_POSITION_ONLY_ON_FLING) {
+					mPendingFloatingGroupUpdatePosition = getFirstVisiblePosition();
+					invalidate();
+				}
+
 				if(mOnScrollListener != null) {
 					mOnScrollListener.onScrollStateChanged(view, scrollState);
 				}
@@ -104,12 +192,31 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 					mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
 				}
 
-				if(mFloatingGroupEnabled && mAdapter != null && mAdapter.getGroupCount() > 0 && visibleItemCount > 0) {
-					createFloatingGroupView(firstVisibleItem);
+				if(visibleItemCount > 0) {
+					// The coalesced updates are done on the pre draw pass, which only happens while attached
+					if(mFloatingGroupUpdatePolicy != FLOATING_GROUP_UPDATE_IMMEDIATE && mPreDrawViewTreeObserver != null) {
+						mPendingFloatingGroupUpdatePosition = firstVisibleItem;
+					} else {
+						updateFloatingGroup(firstVisibleItem, false);
+					}
 				}
 			}
 		});
 
+		mOnPreDrawListener = new ViewTreeObserver.OnPreDrawListener() {
+
+			@Override
+			public boolean onPreDraw() {
+				if(mPendingFloatingGroupUpdatePosition != INVALID_POSITION) {
+					final int position = mPendingFloatingGroupUpdatePosition;
+					mPendingFloatingGroupUpdatePosition = INVALID_POSITION;
+					final boolean positionOnly = mFloatingGroupUpdatePolicy == FLOATING_GROUP_UPDATE_PER_FRAME_POSITION_ONLY_ON_FLING && mScrollState == OnScrollListener.SCROLL_STATE_FLING;
+					updateFloatingGroup(position, positionOnly);
+				}
+				return true;
+			}
+		};
+
 		mOnClickAction = new Runnable() {
 
 			@Override
@@ -132,6 +239,61 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 			}
 		};
 
+		// When the hidden group view is recycled, it's restored before being reused for another position
+		super.setRecyclerListener(new RecyclerListener() {
+
+			@Override
+			public void onMovedToScrapHeap(View view) {
+				if(view == mHiddenGroupView) {
+					restoreHiddenGroupView();
+				}
+
+				if(mRecyclerListener != null) {
+					mRecyclerListener.onMovedToScrapHeap(view);
+				}
+			}
+		});
+
+		mAdapterChangeListener = new WrapperExpandableListAdapter.OnChangeListener() {
+
+			@Override
+			public boolean onGroupPositionsChanged(GroupPositionChange change) {
+				return applyGroupPositionChange(change);
+			}
+
+			@Override
+			public boolean onChildrenStructureChanged(int groupPosition) {
+				return applyChildrenStructureChange(groupPosition);
+			}
+
+			@Override
+			public boolean onGroupsChanged(int fromGroupPosition, int groupCount, Object payload) {
+				return rebindGroupViews(fromGroupPosition, groupCount, payload);
+			}
+
+			@Override
+			public boolean onChildrenChanged(int groupPosition, int fromChildPosition, int childCount, Object payload) {
+				return rebindChildViews(groupPosition, fromChildPosition, childCount, payload);
+			}
+		};
+
+		mFloatingGroupPrefetchIdleHandler = new MessageQueue.IdleHandler() {
+
+			@Override
+			public boolean queueIdle() {
+				mFloatingGroupPrefetchScheduled = prefetchFloatingGroup();
+				return mFloatingGroupPrefetchScheduled;
+			}
+		};
+
+		mOnFloatingGroupClickListener = new View.OnClickListener() {
+
+			@Override
+			public void onClick(View v) {
+				postDelayed(mOnClickAction, ViewConfiguration.getPressedStateDuration());
+			}
+		};
+
 		mPositionSelectorOnTapAction = new Runnable() {
 
 			@Override
@@ -149,6 +311,7 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 			@Override
 			public void run() {
 				setPressed(false);
+				mFloatingGroupSelectorPositioned = false;
 				if(mFloatingGroupView != null) {
 					mFloatingGroupView.setPressed(false);
 				}
@@ -169,38 +332,71 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 		});
 	}
 
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+
+		mPreDrawViewTreeObserver = getViewTreeObserver();
+		mPreDrawViewTreeObserver.addOnPreDrawListener(mOnPreDrawListener);
+
+		// The observer is unregistered while detached, so the data may have changed in the meantime
+		if(mAdapter != null && mDataSetObserver == null) {
+			registerFloatingGroupDataSetObserver();
+			invalidateFloatingGroup();
+		}
+	}
+
 	@Override
 	protected void onDetachedFromWindow() {
 		super.onDetachedFromWindow();
 
+		cancelFloatingGroupPrefetch();
+		releaseFloatingGroupSnapshot();
+
+		if(mPreDrawViewTreeObserver != null) {
+			if(mPreDrawViewTreeObserver.isAlive()) {
+				mPreDrawViewTreeObserver.removeOnPreDrawListener(mOnPreDrawListener);
+			}
+			mPreDrawViewTreeObserver = null;
+		}
+		mPendingFloatingGroupUpdatePosition = INVALID_POSITION;
+
 		if(mAdapter != null && mDataSetObserver != null) {
 			mAdapter.unregisterDataSetObserver(mDataSetObserver);
 			mDataSetObserver = null;
 		}
+
+		// A detached list shouldn't keep its window attach info alive through the floating group views
+		detachFloatingGroupView(mBoundFloatingGroup);
+		for(int i = 0; i < mPreparedFloatingGroups.size(); i++) {
+			detachFloatingGroupView(mPreparedFloatingGroups.get(i));
+		}
+		mFloatingGroupPool.clear();
+		mViewAttachInfo = null;
 	}
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+        if(mWidthMeasureSpec != widthMeasureSpec) {
+            mFloatingGroupMeasureGeneration++;
+        }
         mWidthMeasureSpec = widthMeasureSpec;
     }
 
 	@Override
 	protected void dispatchDraw(Canvas canvas) {
-		// Reflection is used here to obtain info about the selector
-		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-			mSelectorPosition = (Integer) ReflectionUtils.getFieldValue(AbsListView.class, "mSelectorPosition", FloatingGroupExpandableListView.this);
-		} else {
-			mSelectorPosition = (Integer) ReflectionUtils.getFieldValue(AbsListView.class, "mMotionPosition", FloatingGroupExpandableListView.this);
-		}
-
-		mSelectorRect.set((Rect) ReflectionUtils.getFieldValue(AbsListView.class, "mSelectorRect", FloatingGroupExpandableListView.this));
+		final FloatingGroupMetrics metrics = mFloatingGroupMetrics;
+		final long startTime = metrics != null ? System.nanoTime() : 0;
+		final int startReflectiveCallCount = metrics != null ? ReflectionUtils.getReflectiveCallCount() : 0;
 
 		if(!mDrawSelectorOnTop) {
 			drawDefaultSelector(canvas);
 		}
 
+		final long childrenStartTime = metrics != null ? System.nanoTime() : 0;
 		super.dispatchDraw(canvas);
+		final long childrenDrawTime = metrics != null ? System.nanoTime() - childrenStartTime : 0;
 
 		if(mFloatingGroupEnabled && mFloatingGroupView != null) {
 			if(!mDrawSelectorOnTop) {
@@ -209,10 +405,14 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 
 			canvas.save();
 			canvas.clipRect(getPaddingLeft(), getPaddingTop(), getWidth() - getPaddingRight(), getHeight() - getPaddingBottom());
-			if(mFloatingGroupView.getVisibility() == View.VISIBLE) {
-				drawChild(canvas, mFloatingGroupView, getDrawingTime());
+			if(mFloatingGroupSnapshotEnabled && mScrollState == OnScrollListener.SCROLL_STATE_FLING && !mFloatingGroupSnapshotSuspended && prepareFloatingGroupSnapshot()) {
+				canvas.drawBitmap(mFloatingGroupSnapshot, mFloatingGroupView.getLeft(), mFloatingGroupView.getTop(), null);
+			} else {
+				if(mFloatingGroupView.getVisibility() == View.VISIBLE) {
+					drawChild(canvas, mFloatingGroupView, getDrawingTime());
+				}
+				drawFloatingGroupIndicator(canvas);
 			}
-			drawFloatingGroupIndicator(canvas);
 			canvas.restore();
 
 			if(mDrawSelectorOnTop) {
@@ -220,6 +420,11 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 				drawFloatingGroupSelector(canvas);
 			}
 		}
+
+		if(metrics != null) {
+			final long endTime = System.nanoTime();
+			metrics.onDispatchDraw(endTime, endTime - startTime - childrenDrawTime, ReflectionUtils.getReflectiveCallCount() - startReflectiveCallCount, mScrollState != OnScrollListener.SCROLL_STATE_IDLE);
+		}
 	}
 
 	@Override
@@ -232,13 +437,25 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 			mShouldPositionSelector = false;
 		}
 
+		// The selector is tracked here instead of being read from the AbsListView on each frame
+		if(action == MotionEvent.ACTION_DOWN) {
+			mSelectorPosition = pointToPosition((int) ev.getX(), (int) ev.getY());
+			mFloatingGroupSelectorPositioned = false;
+		}
+
 		// If touch events are being handled by onInterceptTouchEvent() or onTouchEvent() we shouldn't dispatch them to the floating group
 		if(!mHandledByOnInterceptTouchEvent && !mHandledByOnTouchEvent && mFloatingGroupView != null) {
-			final int screenCoords[] = new int[2];
-			getLocationInWindow(screenCoords);
-			final RectF floatingGroupRect = new RectF(screenCoords[0] + mFloatingGroupView.getLeft(), screenCoords[1] + mFloatingGroupView.getTop(), screenCoords[0] + mFloatingGroupView.getRight(), screenCoords[1] + mFloatingGroupView.getBottom());
+			// The event and the floating group view bounds are both in the list coordinates, so the hit test doesn't depend on where the list
+			// is in its window, and doesn't allocate
+			final float x = ev.getX();
+			final float y = ev.getY();
+
+			if(x >= mFloatingGroupView.getLeft() && x < mFloatingGroupView.getRight() && y >= mFloatingGroupView.getTop() && y < mFloatingGroupView.getBottom()) {
+				// The floating group may change its state when touched, so it's drawn live for the rest of the fling, instead of
+				// taking a new snapshot on each event
+				mFloatingGroupSnapshotValid = false;
+				mFloatingGroupSnapshotSuspended = mScrollState == OnScrollListener.SCROLL_STATE_FLING;
 
-			if(floatingGroupRect.contains(ev.getRawX(), ev.getRawY())) {
 				if(mSelectorEnabled) {
 					switch(action) {
 					case MotionEvent.ACTION_DOWN:
@@ -283,6 +500,53 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 		return mHandledByOnTouchEvent;
 	}
 
+	@Override
+	public void setGroupIndicator(Drawable groupIndicator) {
+		super.setGroupIndicator(groupIndicator);
+		invalidateFloatingGroupIndicator();
+	}
+
+	@Override
+	public void setIndicatorBounds(int left, int right) {
+		super.setIndicatorBounds(left, right);
+		invalidateFloatingGroupIndicator();
+	}
+
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+	@Override
+	public void setIndicatorBoundsRelative(int start, int end) {
+		super.setIndicatorBoundsRelative(start, end);
+		invalidateFloatingGroupIndicator();
+	}
+
+	// The indicator bounds are resolved again by the ExpandableListView when the layout direction changes
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+	@Override
+	public void onRtlPropertiesChanged(int layoutDirection) {
+		super.onRtlPropertiesChanged(layoutDirection);
+		invalidateFloatingGroupIndicator();
+	}
+
+	@Override
+	public void setPadding(int left, int top, int right, int bottom) {
+		super.setPadding(left, top, right, bottom);
+		invalidateFloatingGroupIndicator();
+	}
+
+	// The relative padding is set without going through setPadding()
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+	@Override
+	public void setPaddingRelative(int start, int top, int end, int bottom) {
+		super.setPaddingRelative(start, top, end, bottom);
+		invalidateFloatingGroupIndicator();
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		mFloatingGroupIndicatorDirty = true;
+	}
+
 	@Override
 	public void setSelector(Drawable sel) {
 		super.setSelector(new ColorDrawable(Color.TRANSPARENT));
@@ -315,106 +579,377 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
             mAdapter.unregisterDataSetObserver(mDataSetObserver);
             mDataSetObserver = null;
         }
+        if(mAdapter != null) {
+            mAdapter.setOnChangeListener(null);
+        }
 
         mAdapter = adapter;
+        mFloatingGroupView = null;
+        mBoundFloatingGroup = null;
+        mPreparedFloatingGroups.clear();
+        mFloatingGroupPool.clear();
+        if(mAdapter != null) {
+            mFloatingGroupPool.setGroupTypeCount(mAdapter.getGroupTypeCount());
+        }
 
-        if(mAdapter != null && mDataSetObserver == null) {
-            mDataSetObserver = new DataSetObserver() {
-                @Override
-                public void onChanged() {
-                    mFloatingGroupView = null;
-                }
-
-                @Override
-                public void onInvalidated() {
-                    mFloatingGroupView = null;
-                }
-            };
-            mAdapter.registerDataSetObserver(mDataSetObserver);
+        registerFloatingGroupDataSetObserver();
+        if(mAdapter != null) {
+            mAdapter.setOnChangeListener(mAdapterChangeListener);
+            syncGroupsExpanded();
         }
 	}
 
+	@Override
+	public void onRestoreInstanceState(Parcelable state) {
+		super.onRestoreInstanceState(state);
+		// The expanded groups are restored straight into the list position metadata, without onGroupExpanded() being called
+		syncGroupsExpanded();
+	}
+
+	// Used by setSelection(), setSelectedGroup() and the fast scroller. The floating group for the target position is prepared right away,
+	// so it's only swapped in when the list is laid out at the new position
+	@Override
+	public void setSelectionFromTop(int position, int y) {
+		super.setSelectionFromTop(position, y);
+		prepareFloatingGroupForPosition(position);
+	}
+
+	private void registerFloatingGroupDataSetObserver() {
+		if(mAdapter != null && mDataSetObserver == null) {
+			mDataSetObserver = new DataSetObserver() {
+				@Override
+				public void onChanged() {
+					invalidateFloatingGroup();
+				}
+
+				@Override
+				public void onInvalidated() {
+					invalidateFloatingGroup();
+				}
+			};
+			mAdapter.registerDataSetObserver(mDataSetObserver);
+		}
+	}
+
 	@Override
 	public void setOnScrollListener(OnScrollListener listener) {
 		mOnScrollListener = listener;
 	}
 	
+	@Override
+	public void setRecyclerListener(RecyclerListener listener) {
+		mRecyclerListener = listener;
+	}
+
 	@Override
 	public void setOnGroupClickListener(OnGroupClickListener onGroupClickListener) {
 		super.setOnGroupClickListener(onGroupClickListener);
 		mOnGroupClickListener = onGroupClickListener;
 	}
 
+	@Override
+	public void setOnGroupExpandListener(OnGroupExpandListener onGroupExpandListener) {
+		super.setOnGroupExpandListener(onGroupExpandListener);
+		mOnGroupExpandListener = onGroupExpandListener;
+	}
+
+	@Override
+	public void setOnGroupCollapseListener(OnGroupCollapseListener onGroupCollapseListener) {
+		super.setOnGroupCollapseListener(onGroupCollapseListener);
+		mOnGroupCollapseListener = onGroupCollapseListener;
+	}
+
+	public void expandAllGroups() {
+		if(mAdapter != null) {
+			setGroupsExpanded(0, mAdapter.getGroupCount(), true);
+		}
+	}
+
+	public void collapseAllGroups() {
+		if(mAdapter != null) {
+			setGroupsExpanded(0, mAdapter.getGroupCount(), false);
+		}
+	}
+
+	// Expands the groups from fromGroupPosition (inclusive) to toGroupPosition (exclusive)
+	public void expandGroups(int fromGroupPosition, int toGroupPosition) {
+		setGroupsExpanded(fromGroupPosition, toGroupPosition, true);
+	}
+
 	public void setFloatingGroupEnabled(boolean floatingGroupEnabled) {
 		mFloatingGroupEnabled = floatingGroupEnabled;
+		if(!mFloatingGroupEnabled) {
+			restoreHiddenGroupView();
+		}
 	}
 
 	public void setOnScrollFloatingGroupListener(OnScrollFloatingGroupListener listener) {
 		mOnScrollFloatingGroupListener = listener;
 	}
 
-	private void createFloatingGroupView(int position) {
-		mFloatingGroupView = null;
-		mFloatingGroupPosition = getPackedPositionGroup(getExpandableListPosition(position));
-
-		for(int i = 0; i < getChildCount(); i++) {
-			final View child = getChildAt(i);
-			final Object tag = child.getTag(R.id.fgelv_tag_changed_visibility);
-			if(tag instanceof Boolean) {
-				final boolean changedVisibility = (Boolean) tag;
-				if(changedVisibility) {
-					child.setVisibility(View.VISIBLE);
-					child.setTag(R.id.fgelv_tag_changed_visibility, null);
-				}
+	// Unlike the OnScrollFloatingGroupListener, it's only called when the floating group or its scroll change
+	public void setOnFloatingGroupScrollChangedListener(OnFloatingGroupScrollChangedListener listener) {
+		mOnFloatingGroupScrollChangedListener = listener;
+		// The holders created by the previous listener can't be handed to the new one
+		mFloatingGroupHolderGeneration++;
+		mFloatingGroupScrollChangePending = true;
+	}
+
+	// One of FLOATING_GROUP_UPDATE_IMMEDIATE (the default), FLOATING_GROUP_UPDATE_PER_FRAME or FLOATING_GROUP_UPDATE_PER_FRAME_POSITION_ONLY_ON_FLING
+	public void setFloatingGroupUpdatePolicy(int floatingGroupUpdatePolicy) {
+		if(floatingGroupUpdatePolicy < FLOATING_GROUP_UPDATE_IMMEDIATE || floatingGroupUpdatePolicy > FLOATING_GROUP_UPDATE_PER_FRAME_POSITION_ONLY_ON_FLING) {
+			throw new IllegalArgumentException("Unknown floating group update policy: " + floatingGroupUpdatePolicy);
+		}
+		mFloatingGroupUpdatePolicy = floatingGroupUpdatePolicy;
+	}
+
+	public int getFloatingGroupUpdatePolicy() {
+		return mFloatingGroupUpdatePolicy;
+	}
+
+	// The group shown as the floating group, or INVALID_POSITION when there's none
+	int getFloatingGroupPosition() {
+		return mFloatingGroupView != null ? mFloatingGroupPosition : INVALID_POSITION;
+	}
+
+	// When enabled, the floating group is drawn from a cached bitmap during flings. It's drawn live again when the list becomes idle or it's touched
+	public void setFloatingGroupSnapshotEnabled(boolean floatingGroupSnapshotEnabled) {
+		mFloatingGroupSnapshotEnabled = floatingGroupSnapshotEnabled;
+		if(!mFloatingGroupSnapshotEnabled) {
+			releaseFloatingGroupSnapshot();
+		}
+	}
+
+	// When all the groups of the same type have the same height, the floating group view doesn't need to be measured again when it's bound to
+	// another group of that type, as long as binding it doesn't request a new layout
+	public void setFloatingGroupHeightFixedPerType(boolean floatingGroupHeightFixedPerType) {
+		mFloatingGroupHeightFixedPerType = floatingGroupHeightFixedPerType;
+		mFloatingGroupMeasureGeneration++;
+	}
+
+	// Pass null to stop collecting the metrics
+	public void setFloatingGroupMetrics(FloatingGroupMetrics metrics) {
+		mFloatingGroupMetrics = metrics;
+	}
+
+	public FloatingGroupMetrics getFloatingGroupMetrics() {
+		return mFloatingGroupMetrics;
+	}
+
+	private void updateFloatingGroup(int firstVisibleItem, boolean positionOnly) {
+		if(mFloatingGroupEnabled && mAdapter != null && mAdapter.getGroupCount() > 0) {
+			final FloatingGroupMetrics metrics = mFloatingGroupMetrics;
+			if(metrics != null) {
+				final long startTime = System.nanoTime();
+				final int startReflectiveCallCount = ReflectionUtils.getReflectiveCallCount();
+				createFloatingGroupView(firstVisibleItem, positionOnly);
+				metrics.onCreateFloatingGroupView(System.nanoTime() - startTime, ReflectionUtils.getReflectiveCallCount() - startReflectiveCallCount);
+			} else {
+				createFloatingGroupView(firstVisibleItem, positionOnly);
 			}
 		}
+	}
+
+	// When positionOnly is true, the floating group is only repositioned or rebound, without calling the OnScrollFloatingGroupListener
+	private void createFloatingGroupView(int position, boolean positionOnly) {
+		mFloatingGroupView = null;
+		mFloatingGroupPosition = getGroupForFlatPosition(position);
+		mFloatingGroupFlatPosition = mFloatingGroupPosition >= 0 ? getGroupFlatPosition(mFloatingGroupPosition) : INVALID_POSITION;
 
 		if(!mFloatingGroupEnabled) {
+			restoreHiddenGroupView();
 			return;
 		}
 
-		final int floatingGroupFlatPosition = getFlatListPosition(getPackedPositionForGroup(mFloatingGroupPosition));
-		final int floatingGroupListPosition = floatingGroupFlatPosition - position;
+		final int floatingGroupListPosition = mFloatingGroupFlatPosition - position;
 
 		if(floatingGroupListPosition >= 0 && floatingGroupListPosition < getChildCount()) {
 			final View currentGroupView = getChildAt(floatingGroupListPosition);
 
 			if(currentGroupView.getTop() >= getPaddingTop()) {
+				restoreHiddenGroupView();
 				return;
-			} else if(currentGroupView.getTop() < getPaddingTop() && currentGroupView.getVisibility() == View.VISIBLE) {
-				currentGroupView.setVisibility(View.INVISIBLE);
-				currentGroupView.setTag(R.id.fgelv_tag_changed_visibility, true);
 			}
-		}
 
-		if(mFloatingGroupPosition >= 0) {
-			mFloatingGroupView = mAdapter.getGroupView(mFloatingGroupPosition, mAdapter.isGroupExpanded(mFloatingGroupPosition), mFloatingGroupView, this);
+			// The group view that is covered by the floating group is hidden, the one hidden before is only restored if it's a different one
+			if(currentGroupView != mHiddenGroupView || mFloatingGroupFlatPosition != mHiddenGroupFlatPosition) {
+				restoreHiddenGroupView();
+				if(currentGroupView.getVisibility() == View.VISIBLE) {
+					currentGroupView.setVisibility(View.INVISIBLE);
+					mHiddenGroupView = currentGroupView;
+					mHiddenGroupFlatPosition = mFloatingGroupFlatPosition;
+				}
+			}
+		} else {
+			restoreHiddenGroupView();
+		}
 
-			if(!mFloatingGroupView.isClickable()) {
-				mSelectorEnabled = true;
-				mFloatingGroupView.setOnClickListener(new View.OnClickListener() {
+		if(mFloatingGroupPosition < 0) {
+			return;
+		}
 
-					@Override
-					public void onClick(View v) {
-						postDelayed(mOnClickAction, ViewConfiguration.getPressedStateDuration());
-					}
-				});
+		// The floating group view is only rebound when its group, its expanded state or the list width changes, otherwise it's just repositioned
+		final boolean floatingGroupExpanded = mAdapter.isGroupExpanded(mFloatingGroupPosition);
+		final boolean rebindFloatingGroupView = mBoundFloatingGroup == null || !mBoundFloatingGroup.isBoundTo(mFloatingGroupPosition, floatingGroupExpanded, mWidthMeasureSpec);
+		boolean layoutFloatingGroupView = false;
+
+		if(rebindFloatingGroupView) {
+			// The current and the incoming floating groups alternate at each group boundary. The outgoing one is kept prepared,
+			// so crossing the same boundary back doesn't need to bind it again
+			final FloatingGroup outgoingFloatingGroup = mBoundFloatingGroup;
+			final boolean keepOutgoingFloatingGroup = isFloatingGroupNeighbour(outgoingFloatingGroup, mFloatingGroupPosition);
+
+			// A floating group prepared beforehand is just swapped in, it has already been bound, measured and laid out
+			final FloatingGroup preparedFloatingGroup = takePreparedFloatingGroup(mFloatingGroupPosition, floatingGroupExpanded);
+			if(preparedFloatingGroup != null) {
+				mBoundFloatingGroup = preparedFloatingGroup;
 			} else {
-				mSelectorEnabled = false;
+				mBoundFloatingGroup = bindFloatingGroup(keepOutgoingFloatingGroup ? null : outgoingFloatingGroup, mFloatingGroupPosition, floatingGroupExpanded);
+				layoutFloatingGroupView = true;
 			}
 
-			loadAttachInfo();
-			setAttachInfo(mFloatingGroupView);
+			// Only the neighbours of the new floating group can be swapped in next. Without this, the prepared groups would keep growing
+			// when the idle prefetch, which also prunes them, doesn't get to run during a long scroll
+			recycleDistantPreparedFloatingGroups(mFloatingGroupPosition);
+			if(keepOutgoingFloatingGroup) {
+				mPreparedFloatingGroups.add(outgoingFloatingGroup);
+			} else if(preparedFloatingGroup != null && outgoingFloatingGroup != null) {
+				mFloatingGroupPool.recycle(outgoingFloatingGroup);
+			}
+			mSelectorEnabled = mBoundFloatingGroup.ownClickListener;
+			scheduleFloatingGroupPrefetch();
 		}
 
+		mFloatingGroupView = mBoundFloatingGroup.view;
+
 		if(mFloatingGroupView == null) {
 			return;
 		}
 
-        AbsListView.LayoutParams params = (AbsListView.LayoutParams) mFloatingGroupView.getLayoutParams();
+		// Only needed again when the list has been detached and attached meanwhile, otherwise the attach info is already set
+		attachFloatingGroupView(mBoundFloatingGroup);
+
+		int floatingGroupScrollY = 0;
+
+		final int nextGroupFlatPosition = getGroupFlatPosition(mFloatingGroupPosition + 1);
+		final int nextGroupListPosition = nextGroupFlatPosition - position;
+
+		if(nextGroupListPosition >= 0 && nextGroupListPosition < getChildCount()) {
+			final View nextGroupView = getChildAt(nextGroupListPosition);
+
+			if(nextGroupView != null && nextGroupView.getTop() < getPaddingTop() + mFloatingGroupView.getMeasuredHeight() + getDividerHeight()) {
+				floatingGroupScrollY = nextGroupView.getTop() - (getPaddingTop() + mFloatingGroupView.getMeasuredHeight() + getDividerHeight());
+			}
+		}
+
+		// The push-out has started, so the incoming floating group must be ready before it takes over, even if the idle prefetch didn't run yet
+		if(floatingGroupScrollY < 0 && mFloatingGroupPosition + 1 < mAdapter.getGroupCount() && !isFloatingGroupPrepared(mFloatingGroupPosition + 1)) {
+			prepareFloatingGroup(mFloatingGroupPosition + 1);
+		}
+
+		final int left = getPaddingLeft();
+		final int top = getPaddingTop() + floatingGroupScrollY;
+
+		if(layoutFloatingGroupView || mFloatingGroupView.getLeft() != left) {
+			layoutFloatingGroup(mBoundFloatingGroup, top);
+		} else if(mFloatingGroupView.getTop() != top) {
+			mFloatingGroupView.offsetTopAndBottom(top - mFloatingGroupView.getTop());
+		}
+
+		if(rebindFloatingGroupView) {
+			mFloatingGroupScrollChangePending = true;
+			mFloatingGroupIndicatorStateDirty = true;
+		}
+		final boolean dispatchFloatingGroupScrollChanged = mOnFloatingGroupScrollChangedListener != null && !positionOnly && (mFloatingGroupScrollChangePending || mDispatchedFloatingGroupScrollY != floatingGroupScrollY);
+
+		// The listeners may change the floating group view depending on its scroll, so the snapshot can't be reused in that case
+		if(rebindFloatingGroupView || dispatchFloatingGroupScrollChanged || (mOnScrollFloatingGroupListener != null && !positionOnly && mFloatingGroupScrollY != floatingGroupScrollY)) {
+			mFloatingGroupSnapshotValid = false;
+		}
+
+		mFloatingGroupScrollY = floatingGroupScrollY;
+		if(mOnScrollFloatingGroupListener != null && !positionOnly) {
+			mOnScrollFloatingGroupListener.onScrollFloatingGroupListener(mFloatingGroupView, mFloatingGroupScrollY);
+		}
+
+		if(dispatchFloatingGroupScrollChanged) {
+			final FloatingGroup floatingGroup = mBoundFloatingGroup;
+			if(floatingGroup.holder == null || floatingGroup.holderGeneration != mFloatingGroupHolderGeneration) {
+				floatingGroup.holder = mOnFloatingGroupScrollChangedListener.onCreateFloatingGroupHolder(mFloatingGroupView);
+				floatingGroup.holderGeneration = mFloatingGroupHolderGeneration;
+			}
+
+			final int floatingGroupHeight = mFloatingGroupView.getMeasuredHeight();
+			final float pushOutFraction = floatingGroupHeight > 0 ? Math.min(1f, -floatingGroupScrollY / (float) floatingGroupHeight) : 0f;
+
+			mFloatingGroupScrollChangePending = false;
+			mDispatchedFloatingGroupScrollY = floatingGroupScrollY;
+			mOnFloatingGroupScrollChangedListener.onFloatingGroupScrollChanged(mFloatingGroupView, floatingGroup.holder, mFloatingGroupPosition, pushOutFraction, floatingGroupScrollY);
+		}
+
+		// The floating group view isn't in the view hierarchy, so when its content changes size, as when the listeners above change it or
+		// an image is loaded into it, nothing lays it out again. It's measured and laid out in place, without binding it again
+		if(mFloatingGroupView.isLayoutRequested()) {
+			measureFloatingGroup(mBoundFloatingGroup, mBoundFloatingGroup.measureKey);
+			layoutFloatingGroup(mBoundFloatingGroup, mFloatingGroupView.getTop());
+			mFloatingGroupSnapshotValid = false;
+		}
+	}
+
+	// Binds and measures a floating group view for the group, the given floating group is reused when it has the same group type
+	private FloatingGroup bindFloatingGroup(FloatingGroup floatingGroup, int groupPosition, boolean expanded) {
+		final int groupType = mAdapter.getGroupType(groupPosition);
+
+		// The previous view is reused directly when the group type is the same, otherwise it's kept for later in the pool
+		if(floatingGroup != null && floatingGroup.type != groupType) {
+			mFloatingGroupPool.recycle(floatingGroup);
+			floatingGroup = null;
+		}
+		if(floatingGroup == null) {
+			floatingGroup = mFloatingGroupPool.obtain(groupType);
+		}
+
+		final View convertView = floatingGroup.view;
+		floatingGroup.view = mAdapter.getGroupView(groupPosition, expanded, convertView, this);
+		if(mFloatingGroupMetrics != null) {
+			mFloatingGroupMetrics.onRebind();
+		}
+		floatingGroup.groupPosition = groupPosition;
+		floatingGroup.expanded = expanded;
+		floatingGroup.widthMeasureSpec = mWidthMeasureSpec;
+
+		if(floatingGroup.view != convertView) {
+			floatingGroup.ownClickListener = false;
+			floatingGroup.measureGeneration = -1;
+			floatingGroup.holder = null;
+			floatingGroup.attachInfo = null;
+		}
+
+		if(floatingGroup.view == null) {
+			floatingGroup.invalidate();
+			return floatingGroup;
+		}
+
+		// Since the view is reused, it may already be clickable because of the listener set here on a previous bind
+		if(floatingGroup.ownClickListener || !floatingGroup.view.isClickable()) {
+			floatingGroup.ownClickListener = true;
+			floatingGroup.view.setOnClickListener(mOnFloatingGroupClickListener);
+		}
+
+		attachFloatingGroupView(floatingGroup);
+
+		final long measureKey = mFloatingGroupHeightFixedPerType ? groupType : mAdapter.getGroupId(groupPosition);
+		measureFloatingGroup(floatingGroup, measureKey);
+
+		return floatingGroup;
+	}
+
+	// The measure is skipped when the view was already measured for the same key and width, and hasn't requested a layout since
+	private void measureFloatingGroup(FloatingGroup floatingGroup, long measureKey) {
+        AbsListView.LayoutParams params = (AbsListView.LayoutParams) floatingGroup.view.getLayoutParams();
         if(params == null) {
             params = new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT, 0);
-            mFloatingGroupView.setLayoutParams(params);
+            floatingGroup.view.setLayoutParams(params);
         }
 
         final int childWidthSpec = ViewGroup.getChildMeasureSpec(mWidthMeasureSpec, getPaddingLeft() + getPaddingRight(), params.width);
@@ -426,86 +961,559 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
             childHeightSpec = MeasureSpec.makeMeasureSpec(0 , MeasureSpec.UNSPECIFIED);
         }
 
-        mFloatingGroupView.measure(childWidthSpec, childHeightSpec);
+        if(!floatingGroup.isMeasuredFor(measureKey, childWidthSpec, mFloatingGroupMeasureGeneration)) {
+            floatingGroup.view.measure(childWidthSpec, childHeightSpec);
+            floatingGroup.setMeasuredFor(measureKey, childWidthSpec, mFloatingGroupMeasureGeneration);
+            if(mFloatingGroupMetrics != null) {
+                mFloatingGroupMetrics.onMeasure();
+            }
+        }
+	}
 
-		int floatingGroupScrollY = 0;
+	private void layoutFloatingGroup(FloatingGroup floatingGroup, int top) {
+		final int left = getPaddingLeft();
+		final int right = left + floatingGroup.view.getMeasuredWidth();
+		final int bottom = top + floatingGroup.view.getMeasuredHeight();
+		floatingGroup.view.layout(left, top, right, bottom);
+		if(mFloatingGroupMetrics != null) {
+			mFloatingGroupMetrics.onLayout();
+		}
+	}
 
-		final int nextGroupFlatPosition = getFlatListPosition(getPackedPositionForGroup(mFloatingGroupPosition + 1));
-		final int nextGroupListPosition = nextGroupFlatPosition - position;
+	private FloatingGroup takePreparedFloatingGroup(int groupPosition, boolean expanded) {
+		for(int i = 0; i < mPreparedFloatingGroups.size(); i++) {
+			final FloatingGroup floatingGroup = mPreparedFloatingGroups.get(i);
+			if(floatingGroup.isBoundTo(groupPosition, expanded, mWidthMeasureSpec)) {
+				mPreparedFloatingGroups.remove(i);
+				return floatingGroup;
+			}
+		}
+		return null;
+	}
 
-		if(nextGroupListPosition >= 0 && nextGroupListPosition < getChildCount()) {
-			final View nextGroupView = getChildAt(nextGroupListPosition);
+	private void clearPreparedFloatingGroups() {
+		for(int i = 0; i < mPreparedFloatingGroups.size(); i++) {
+			mFloatingGroupPool.recycle(mPreparedFloatingGroups.get(i));
+		}
+		mPreparedFloatingGroups.clear();
+	}
 
-			if(nextGroupView != null && nextGroupView.getTop() < getPaddingTop() + mFloatingGroupView.getMeasuredHeight() + getDividerHeight()) {
-				floatingGroupScrollY = nextGroupView.getTop() - (getPaddingTop() + mFloatingGroupView.getMeasuredHeight() + getDividerHeight());
+	private void recycleDistantPreparedFloatingGroups(int groupPosition) {
+		for(int i = mPreparedFloatingGroups.size() - 1; i >= 0; i--) {
+			if(Math.abs(mPreparedFloatingGroups.get(i).groupPosition - groupPosition) != 1) {
+				mFloatingGroupPool.recycle(mPreparedFloatingGroups.remove(i));
 			}
 		}
+	}
 
-		final int left = getPaddingLeft();
-		final int top = getPaddingTop() + floatingGroupScrollY;
-		final int right = left + mFloatingGroupView.getMeasuredWidth();
-		final int bottom = top + mFloatingGroupView.getMeasuredHeight();
-		mFloatingGroupView.layout(left, top, right, bottom);
+	private void scheduleFloatingGroupPrefetch() {
+		if(!mFloatingGroupPrefetchScheduled && getWindowToken() != null) {
+			mFloatingGroupPrefetchScheduled = true;
+			Looper.myQueue().addIdleHandler(mFloatingGroupPrefetchIdleHandler);
+		}
+	}
 
-		mFloatingGroupScrollY = floatingGroupScrollY;
-		if(mOnScrollFloatingGroupListener != null) {
-			mOnScrollFloatingGroupListener.onScrollFloatingGroupListener(mFloatingGroupView, mFloatingGroupScrollY);
+	private void cancelFloatingGroupPrefetch() {
+		if(mFloatingGroupPrefetchScheduled) {
+			mFloatingGroupPrefetchScheduled = false;
+			Looper.myQueue().removeIdleHandler(mFloatingGroupPrefetchIdleHandler);
+		}
+	}
+
+	// Prepares the previous or the next floating group, one at a time. Returns whether there's still something to prepare
+	private boolean prefetchFloatingGroup() {
+		if(!mFloatingGroupEnabled || mAdapter == null || mBoundFloatingGroup == null || mBoundFloatingGroup.view == null) {
+			return false;
+		}
+
+		final int currentGroupPosition = mBoundFloatingGroup.groupPosition;
+		if(currentGroupPosition < 0) {
+			return false;
+		}
+
+		// Only the groups next to the current one are kept prepared
+		for(int i = mPreparedFloatingGroups.size() - 1; i >= 0; i--) {
+			final FloatingGroup floatingGroup = mPreparedFloatingGroups.get(i);
+			final int distance = Math.abs(floatingGroup.groupPosition - currentGroupPosition);
+			if(distance != 1 || !floatingGroup.isBoundTo(floatingGroup.groupPosition, mAdapter.isGroupExpanded(floatingGroup.groupPosition), mWidthMeasureSpec)) {
+				mFloatingGroupPool.recycle(mPreparedFloatingGroups.remove(i));
+			}
+		}
+
+		final int groupCount = mAdapter.getGroupCount();
+		final int nextGroupPosition = currentGroupPosition + 1;
+		final int previousGroupPosition = currentGroupPosition - 1;
+		final boolean prepareNext = nextGroupPosition < groupCount && !isFloatingGroupPrepared(nextGroupPosition);
+		final boolean preparePrevious = previousGroupPosition >= 0 && !isFloatingGroupPrepared(previousGroupPosition);
+
+		if(prepareNext) {
+			prepareFloatingGroup(nextGroupPosition);
+		} else if(preparePrevious) {
+			prepareFloatingGroup(previousGroupPosition);
+		}
+
+		return prepareNext && preparePrevious;
+	}
+
+	private void prepareFloatingGroupForPosition(int position) {
+		if(!mFloatingGroupEnabled || mAdapter == null || mAdapter.getGroupCount() == 0) {
+			return;
+		}
+
+		final int groupPosition = getGroupForFlatPosition(position);
+		if(groupPosition < 0 || isFloatingGroupPrepared(groupPosition) ||
+				(mBoundFloatingGroup != null && mBoundFloatingGroup.isBoundTo(groupPosition, mAdapter.isGroupExpanded(groupPosition), mWidthMeasureSpec))) {
+			return;
+		}
+
+		// Successive jumps shouldn't keep more floating groups prepared than the ones around the current group and the target
+		if(mPreparedFloatingGroups.size() > 2) {
+			mFloatingGroupPool.recycle(mPreparedFloatingGroups.remove(0));
+		}
+		prepareFloatingGroup(groupPosition);
+	}
+
+	private boolean isFloatingGroupNeighbour(FloatingGroup floatingGroup, int groupPosition) {
+		return floatingGroup != null && floatingGroup.view != null && floatingGroup.groupPosition >= 0 && Math.abs(floatingGroup.groupPosition - groupPosition) == 1 && !isFloatingGroupPrepared(floatingGroup.groupPosition);
+	}
+
+	private boolean isFloatingGroupPrepared(int groupPosition) {
+		for(int i = 0; i < mPreparedFloatingGroups.size(); i++) {
+			if(mPreparedFloatingGroups.get(i).groupPosition == groupPosition) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void prepareFloatingGroup(int groupPosition) {
+		final FloatingGroup floatingGroup = bindFloatingGroup(null, groupPosition, mAdapter.isGroupExpanded(groupPosition));
+		if(floatingGroup.view == null) {
+			return;
+		}
+		layoutFloatingGroup(floatingGroup, getPaddingTop());
+		mPreparedFloatingGroups.add(floatingGroup);
+	}
+
+	// The floating group views are kept, so they can be reused as soon as the list is laid out again
+	private void invalidateFloatingGroup() {
+		mFloatingGroupView = null;
+		mFloatingGroupIndicatorStateDirty = true;
+		clearPreparedFloatingGroups();
+		mFloatingGroupSnapshotValid = false;
+		mFloatingGroupMeasureGeneration++;
+		if(mBoundFloatingGroup != null) {
+			mBoundFloatingGroup.invalidate();
+		}
+		if(mAdapter != null) {
+			mFloatingGroupPool.setGroupTypeCount(mAdapter.getGroupTypeCount());
 		}
 	}
 
+	// Instead of expanding or collapsing the groups one by one, which updates the list position metadata and notifies the list each time,
+	// the expanded group metadata list is replaced all at once, so the list is notified and laid out only once
+	private void setGroupsExpanded(int fromGroupPosition, int toGroupPosition, boolean expanded) {
+		if(mAdapter == null) {
+			return;
+		}
+
+		final int from = Math.max(0, fromGroupPosition);
+		final int to = Math.min(mAdapter.getGroupCount(), toGroupPosition);
+		if(from >= to) {
+			return;
+		}
+
+		final Class<?> connectorClass = ReflectionUtils.findClass("android.widget.ExpandableListConnector");
+		final Class<?> groupMetadataClass = ReflectionUtils.findClass("android.widget.ExpandableListConnector$GroupMetadata");
+		final Object connector = ReflectionUtils.getFieldValue(ExpandableListView.class, "mConnector", this);
+		final boolean canReplaceGroupMetadata = connectorClass != null && groupMetadataClass != null && connector instanceof BaseAdapter &&
+				ReflectionUtils.getMethod(connectorClass, "setExpandedGroupMetadataList", ArrayList.class) != null &&
+				ReflectionUtils.getMethod(groupMetadataClass, "obtain", int.class, int.class, int.class, long.class) != null &&
+				ReflectionUtils.getField(groupMetadataClass, "gPos") != null;
+		final ArrayList<?> groupMetadataList = canReplaceGroupMetadata ? (ArrayList<?>) ReflectionUtils.invokeMethod(connectorClass, "getExpandedGroupMetadataList", new Class<?>[]{}, connector) : null;
+
+		if(groupMetadataList == null) {
+			for(int i = from; i < to; i++) {
+				if(expanded) {
+					expandGroup(i);
+				} else {
+					collapseGroup(i);
+				}
+			}
+			return;
+		}
+
+		// The metadata list is sorted by group position, the groups that are already expanded keep their current metadata
+		final int groupMetadataCount = groupMetadataList.size();
+		final ArrayList<Object> newGroupMetadataList = new ArrayList<Object>(groupMetadataCount + (expanded ? to - from : 0));
+		final Object[] rangeGroupMetadata = new Object[to - from];
+
+		int index = 0;
+		while(index < groupMetadataCount && ReflectionUtils.getInt(groupMetadataClass, "gPos", groupMetadataList.get(index), -1) < from) {
+			newGroupMetadataList.add(groupMetadataList.get(index++));
+		}
+
+		while(index < groupMetadataCount) {
+			final int groupPosition = ReflectionUtils.getInt(groupMetadataClass, "gPos", groupMetadataList.get(index), -1);
+			if(groupPosition >= to) {
+				break;
+			}
+			rangeGroupMetadata[groupPosition - from] = groupMetadataList.get(index++);
+		}
+
+		if(expanded) {
+			for(int i = from; i < to; i++) {
+				Object groupMetadata = rangeGroupMetadata[i - from];
+				if(groupMetadata == null) {
+					// The flat positions are computed by the connector, GroupMetadata.REFRESH (-1) forces the children count to be refreshed
+					groupMetadata = ReflectionUtils.invokeMethod(groupMetadataClass, "obtain", new Class<?>[]{int.class, int.class, int.class, long.class}, null, -1, -1, i, mAdapter.getGroupId(i));
+				}
+				newGroupMetadataList.add(groupMetadata);
+			}
+		}
+
+		while(index < groupMetadataCount) {
+			newGroupMetadataList.add(groupMetadataList.get(index++));
+		}
+
+		ReflectionUtils.invokeMethod(connectorClass, "setExpandedGroupMetadataList", new Class<?>[]{ArrayList.class}, connector, newGroupMetadataList);
+		mAdapter.setGroupsExpanded(from, to, expanded);
+		((BaseAdapter) connector).notifyDataSetChanged();
+
+		for(int i = from; i < to; i++) {
+			if((rangeGroupMetadata[i - from] != null) != expanded) {
+				if(expanded && mOnGroupExpandListener != null) {
+					mOnGroupExpandListener.onGroupExpand(i);
+				} else if(!expanded && mOnGroupCollapseListener != null) {
+					mOnGroupCollapseListener.onGroupCollapse(i);
+				}
+			}
+		}
+	}
+
+	private boolean applyGroupPositionChange(GroupPositionChange change) {
+		final BaseAdapter connector = getConnector();
+		if(connector == null) {
+			return false;
+		}
+
+		restoreHiddenGroupView();
+
+		// The floating groups follow their groups, so they don't need to be bound again
+		if(mBoundFloatingGroup != null) {
+			final int groupPosition = change.apply(mBoundFloatingGroup.groupPosition);
+			if(groupPosition >= 0) {
+				mBoundFloatingGroup.groupPosition = groupPosition;
+			} else {
+				mBoundFloatingGroup.invalidate();
+			}
+		}
+		for(int i = mPreparedFloatingGroups.size() - 1; i >= 0; i--) {
+			final FloatingGroup floatingGroup = mPreparedFloatingGroups.get(i);
+			final int groupPosition = change.apply(floatingGroup.groupPosition);
+			if(groupPosition >= 0) {
+				floatingGroup.groupPosition = groupPosition;
+			} else {
+				mFloatingGroupPool.recycle(mPreparedFloatingGroups.remove(i));
+			}
+		}
+		mFloatingGroupSnapshotValid = false;
+		mFloatingGroupIndicatorStateDirty = true;
+
+		return refreshExpandedGroupMetadata(connector, change);
+	}
+
+	private boolean applyChildrenStructureChange(int groupPosition) {
+		removePreparedFloatingGroup(groupPosition);
+		mFloatingGroupIndicatorStateDirty = true;
+		mFloatingGroupSnapshotValid = false;
+
+		if(!mAdapter.isGroupExpanded(groupPosition)) {
+			invalidate();
+			return true;
+		}
+
+		final BaseAdapter connector = getConnector();
+		if(connector == null) {
+			return false;
+		}
+		restoreHiddenGroupView();
+		return refreshExpandedGroupMetadata(connector, null);
+	}
+
+	// The group views that are shown are bound again in place, the list is only laid out again if the adapter returns other views
+	private boolean rebindGroupViews(int fromGroupPosition, int groupCount, Object payload) {
+		final BaseAdapter connector = getConnector();
+		if(connector == null) {
+			return false;
+		}
+
+		final int firstVisiblePosition = getFirstVisiblePosition();
+		boolean relayout = false;
+		for(int i = fromGroupPosition; i < fromGroupPosition + groupCount; i++) {
+			final View groupView = getChildAt(getGroupFlatPosition(i) - firstVisiblePosition);
+			if(groupView != null && mAdapter.rebindGroupView(i, mAdapter.isGroupExpanded(i), groupView, getItemViewType(groupView), payload, this) != groupView) {
+				relayout = true;
+			}
+			rebindFloatingGroup(i, payload);
+		}
+
+		if(relayout) {
+			restoreHiddenGroupView();
+			connector.notifyDataSetChanged();
+		}
+		invalidate();
+		return true;
+	}
+
+	private boolean rebindChildViews(int groupPosition, int fromChildPosition, int childCount, Object payload) {
+		if(!mAdapter.isGroupExpanded(groupPosition)) {
+			return true;
+		}
+
+		final BaseAdapter connector = getConnector();
+		if(connector == null) {
+			return false;
+		}
+
+		final int childrenCount = mAdapter.getChildrenCount(groupPosition);
+		final int groupListPosition = getGroupFlatPosition(groupPosition) - getFirstVisiblePosition();
+		final int toChildPosition = Math.min(fromChildPosition + childCount, childrenCount);
+		boolean relayout = false;
+		for(int i = Math.max(0, fromChildPosition); i < toChildPosition; i++) {
+			final View childView = getChildAt(groupListPosition + 1 + i);
+			if(childView != null && mAdapter.rebindChildView(groupPosition, i, i == childrenCount - 1, childView, getItemViewType(childView), payload, this) != childView) {
+				relayout = true;
+			}
+		}
+
+		if(relayout) {
+			connector.notifyDataSetChanged();
+		}
+		invalidate();
+		return true;
+	}
+
+	private void rebindFloatingGroup(int groupPosition, Object payload) {
+		removePreparedFloatingGroup(groupPosition);
+
+		final FloatingGroup floatingGroup = mBoundFloatingGroup;
+		if(floatingGroup == null || floatingGroup.view == null || floatingGroup.groupPosition != groupPosition) {
+			return;
+		}
+
+		mFloatingGroupSnapshotValid = false;
+		mFloatingGroupIndicatorStateDirty = true;
+		mFloatingGroupScrollChangePending = true;
+
+		// Without a payload the floating group is just bound again as usual
+		if(payload != null) {
+			final View view = mAdapter.rebindGroupView(groupPosition, floatingGroup.expanded, floatingGroup.view, floatingGroup.type, payload, this);
+			if(view == floatingGroup.view && !view.isLayoutRequested()) {
+				return;
+			}
+		}
+
+		floatingGroup.invalidate();
+		if(getChildCount() > 0) {
+			updateFloatingGroup(getFirstVisiblePosition(), false);
+		}
+	}
+
+	// The item view type a list row was created for, as kept by the list recycler in its hidden LayoutParams field
+	private static int getItemViewType(View view) {
+		final ViewGroup.LayoutParams params = view.getLayoutParams();
+		if(!(params instanceof AbsListView.LayoutParams)) {
+			return ITEM_VIEW_TYPE_UNKNOWN;
+		}
+		return ReflectionUtils.getInt(AbsListView.LayoutParams.class, "viewType", params, ITEM_VIEW_TYPE_UNKNOWN);
+	}
+
+	private void removePreparedFloatingGroup(int groupPosition) {
+		for(int i = mPreparedFloatingGroups.size() - 1; i >= 0; i--) {
+			if(mPreparedFloatingGroups.get(i).groupPosition == groupPosition) {
+				mFloatingGroupPool.recycle(mPreparedFloatingGroups.remove(i));
+			}
+		}
+	}
+
+	// The flat positions of the floating groups come from the adapter's expanded state, so it's kept in sync with the groups the list has expanded
+	private void syncGroupsExpanded() {
+		if(mAdapter == null) {
+			return;
+		}
+
+		final Class<?> connectorClass = ReflectionUtils.findClass("android.widget.ExpandableListConnector");
+		final Class<?> groupMetadataClass = ReflectionUtils.findClass("android.widget.ExpandableListConnector$GroupMetadata");
+		final BaseAdapter connector = getConnector();
+		final ArrayList<?> groupMetadataList = connectorClass != null && groupMetadataClass != null && connector != null && ReflectionUtils.getField(groupMetadataClass, "gPos") != null ?
+				(ArrayList<?>) ReflectionUtils.invokeMethod(connectorClass, "getExpandedGroupMetadataList", new Class<?>[]{}, connector) : null;
+
+		final int[] expandedGroupPositions;
+		int expandedGroupCount = 0;
+		if(groupMetadataList != null) {
+			expandedGroupPositions = new int[groupMetadataList.size()];
+			for(int i = 0; i < expandedGroupPositions.length; i++) {
+				expandedGroupPositions[expandedGroupCount++] = ReflectionUtils.getInt(groupMetadataClass, "gPos", groupMetadataList.get(i), -1);
+			}
+		} else {
+			final int groupCount = mAdapter.getGroupCount();
+			expandedGroupPositions = new int[groupCount];
+			for(int i = 0; i < groupCount; i++) {
+				if(isGroupExpanded(i)) {
+					expandedGroupPositions[expandedGroupCount++] = i;
+				}
+			}
+		}
+
+		mAdapter.syncGroupsExpanded(expandedGroupPositions, expandedGroupCount);
+		invalidateFloatingGroup();
+	}
+
+	private BaseAdapter getConnector() {
+		final Object connector = ReflectionUtils.getFieldValue(ExpandableListView.class, "mConnector", this);
+		return connector instanceof BaseAdapter ? (BaseAdapter) connector : null;
+	}
+
+	// Moves the expanded group metadata of the ExpandableListConnector along with the groups, then lets it compute the flat positions again.
+	// Only the list rows are laid out again, the ExpandableListView doesn't see it as a data set change
+	private boolean refreshExpandedGroupMetadata(BaseAdapter connector, GroupPositionChange change) {
+		final Class<?> connectorClass = ReflectionUtils.findClass("android.widget.ExpandableListConnector");
+		final Class<?> groupMetadataClass = ReflectionUtils.findClass("android.widget.ExpandableListConnector$GroupMetadata");
+		if(connectorClass == null || groupMetadataClass == null || ReflectionUtils.getField(groupMetadataClass, "gPos") == null ||
+				ReflectionUtils.getMethod(connectorClass, "setExpandedGroupMetadataList", ArrayList.class) == null) {
+			return false;
+		}
+
+		final ArrayList<?> groupMetadataList = (ArrayList<?>) ReflectionUtils.invokeMethod(connectorClass, "getExpandedGroupMetadataList", new Class<?>[]{}, connector);
+		if(groupMetadataList == null) {
+			return false;
+		}
+
+		// The list is kept sorted by group position, a moved group is inserted back at its new place
+		final int groupMetadataCount = groupMetadataList.size();
+		final ArrayList<Object> newGroupMetadataList = new ArrayList<Object>(groupMetadataCount);
+		final int[] groupPositions = new int[groupMetadataCount];
+		for(int i = 0; i < groupMetadataCount; i++) {
+			final Object groupMetadata = groupMetadataList.get(i);
+			final int oldGroupPosition = ReflectionUtils.getInt(groupMetadataClass, "gPos", groupMetadata, -1);
+			final int groupPosition = change != null ? change.apply(oldGroupPosition) : oldGroupPosition;
+			if(groupPosition < 0) {
+				continue;
+			}
+			if(groupPosition != oldGroupPosition) {
+				ReflectionUtils.setInt(groupMetadataClass, "gPos", groupMetadata, groupPosition);
+			}
+
+			int index = newGroupMetadataList.size();
+			while(index > 0 && groupPositions[index - 1] > groupPosition) {
+				index--;
+			}
+			System.arraycopy(groupPositions, index, groupPositions, index + 1, newGroupMetadataList.size() - index);
+			groupPositions[index] = groupPosition;
+			newGroupMetadataList.add(index, groupMetadata);
+		}
+
+		ReflectionUtils.invokeMethod(connectorClass, "setExpandedGroupMetadataList", new Class<?>[]{ArrayList.class}, connector, newGroupMetadataList);
+		connector.notifyDataSetChanged();
+		return true;
+	}
+
+	private void restoreHiddenGroupView() {
+		if(mHiddenGroupView != null) {
+			mHiddenGroupView.setVisibility(View.VISIBLE);
+			mHiddenGroupView = null;
+			mHiddenGroupFlatPosition = INVALID_POSITION;
+		}
+	}
+
+	// These use the adapter's own index of the group positions instead of the list position metadata, and take the header views into account
+	private int getGroupFlatPosition(int groupPosition) {
+		return getHeaderViewsCount() + mAdapter.getGroupFlatPosition(groupPosition);
+	}
+
+	private int getGroupForFlatPosition(int flatPosition) {
+		return mAdapter.getGroupForFlatPosition(flatPosition - getHeaderViewsCount());
+	}
+
 	private void loadAttachInfo() {
 		if(mViewAttachInfo == null) {
 			mViewAttachInfo = ReflectionUtils.getFieldValue(View.class, "mAttachInfo", FloatingGroupExpandableListView.this);
 		}
 	}
 
-	private void setAttachInfo(View v) {
+	// The attach info is only set on the whole floating group view tree when the view is new, or after the list is attached again.
+	// Views added to the tree later get it from their parent, since ViewGroup.addView() dispatches the parent attach info to them
+	private void attachFloatingGroupView(FloatingGroup floatingGroup) {
+		loadAttachInfo();
+		if(floatingGroup.view != null && mViewAttachInfo != null && floatingGroup.attachInfo != mViewAttachInfo) {
+			setAttachInfo(floatingGroup.view, mViewAttachInfo);
+			floatingGroup.attachInfo = mViewAttachInfo;
+		}
+	}
+
+	private void detachFloatingGroupView(FloatingGroup floatingGroup) {
+		if(floatingGroup != null && floatingGroup.view != null && floatingGroup.attachInfo != null) {
+			setAttachInfo(floatingGroup.view, null);
+			floatingGroup.attachInfo = null;
+		}
+	}
+
+	private void setAttachInfo(View v, Object attachInfo) {
 		if(v == null) {
 			return;
 		}
-		if(mViewAttachInfo != null) {
-			ReflectionUtils.setFieldValue(View.class, "mAttachInfo", v, mViewAttachInfo);
-		}
+		ReflectionUtils.setFieldValue(View.class, "mAttachInfo", v, attachInfo);
 		if(v instanceof ViewGroup) {
 			final ViewGroup viewGroup = (ViewGroup) v;
 			for(int i = 0; i < viewGroup.getChildCount(); i++) {
-				setAttachInfo(viewGroup.getChildAt(i));
+				setAttachInfo(viewGroup.getChildAt(i), attachInfo);
 			}
 		}
 	}
 
 	private void positionSelectorOnFloatingGroup() {
 		if(mShouldPositionSelector && mFloatingGroupView != null) {
-			if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-				final int floatingGroupFlatPosition = getFlatListPosition(getPackedPositionForGroup(mFloatingGroupPosition));
-				ReflectionUtils.invokeMethod(AbsListView.class, "positionSelector", new Class<?>[]{int.class, View.class}, FloatingGroupExpandableListView.this, floatingGroupFlatPosition, mFloatingGroupView);
-			} else {
-				ReflectionUtils.invokeMethod(AbsListView.class, "positionSelector", new Class<?>[]{View.class}, FloatingGroupExpandableListView.this, mFloatingGroupView);
-			}
+			mSelectorPosition = mFloatingGroupFlatPosition;
+			mFloatingGroupSelectorPositioned = true;
 			invalidate();
 		}
 		mShouldPositionSelector = false;
 		removeCallbacks(mPositionSelectorOnTapAction);
 	}
 
+	// In touch mode the selector follows the pressed row. Otherwise it follows the selected row, and like AbsListView does, it's only shown
+	// while the list has focus
+	private int getSelectorPosition(boolean inTouchMode) {
+		if(inTouchMode) {
+			return mSelectorPosition;
+		}
+		return hasFocus() ? getSelectedItemPosition() : INVALID_POSITION;
+	}
+
 	private void drawDefaultSelector(Canvas canvas) {
-		final int selectorListPosition = mSelectorPosition - getFirstVisiblePosition();
+		final boolean inTouchMode = isInTouchMode();
+		final int selectorPosition = getSelectorPosition(inTouchMode);
+		if(selectorPosition == INVALID_POSITION || (mFloatingGroupView != null && selectorPosition == mFloatingGroupFlatPosition)) {
+			return;
+		}
 
-		if(selectorListPosition >= 0 && selectorListPosition < getChildCount() && mSelectorRect != null && !mSelectorRect.isEmpty()) {
-			final int floatingGroupFlatPosition = getFlatListPosition(getPackedPositionForGroup(mFloatingGroupPosition));
-			if(mFloatingGroupView == null || mSelectorPosition != floatingGroupFlatPosition) {
-				drawSelector(canvas);
-			}
+		final View selectorView = getChildAt(selectorPosition - getFirstVisiblePosition());
+		if(selectorView == null || (inTouchMode && !selectorView.isPressed())) {
+			return;
 		}
+
+		mSelectorRect.set(selectorView.getLeft(), selectorView.getTop(), selectorView.getRight(), selectorView.getBottom());
+		drawSelector(canvas);
 	}
 
 	private void drawFloatingGroupSelector(Canvas canvas) {
-		if(mSelectorRect != null && !mSelectorRect.isEmpty()) {
-			final int floatingGroupFlatPosition = getFlatListPosition(getPackedPositionForGroup(mFloatingGroupPosition));
-			if(mSelectorPosition == floatingGroupFlatPosition) {
-				mSelectorRect.set(mFloatingGroupView.getLeft(), mFloatingGroupView.getTop(), mFloatingGroupView.getRight(), mFloatingGroupView.getBottom());
-				drawSelector(canvas);
-			}
+		// In touch mode the selector is only drawn on the floating group once a tap positioned it there, while a selected floating group
+		// always shows it, since its row is hidden under the floating group or scrolled away
+		final boolean inTouchMode = isInTouchMode();
+		if(mFloatingGroupFlatPosition != INVALID_POSITION && (!inTouchMode || mFloatingGroupSelectorPositioned) && getSelectorPosition(inTouchMode) == mFloatingGroupFlatPosition) {
+			mSelectorRect.set(mFloatingGroupView.getLeft(), mFloatingGroupView.getTop(), mFloatingGroupView.getRight(), mFloatingGroupView.getBottom());
+			drawSelector(canvas);
 		}
 	}
 
@@ -522,29 +1530,119 @@ public class FloatingGroupExpandableListView extends ExpandableListView {
 		canvas.restore();
 	}
 
+	private boolean prepareFloatingGroupSnapshot() {
+		if(mFloatingGroupSnapshotValid && mFloatingGroupSnapshot != null) {
+			return true;
+		}
+
+		final int width = mFloatingGroupView.getWidth();
+		final int height = mFloatingGroupView.getHeight();
+		if(width <= 0 || height <= 0) {
+			return false;
+		}
+
+		// The bitmap is reused as long as it's big enough
+		if(mFloatingGroupSnapshot == null || mFloatingGroupSnapshot.getWidth() != width || mFloatingGroupSnapshot.getHeight() < height) {
+			releaseFloatingGroupSnapshot();
+			try {
+				mFloatingGroupSnapshot = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+			} catch (OutOfMemoryError e) {
+				return false;
+			}
+			mFloatingGroupSnapshotCanvas.setBitmap(mFloatingGroupSnapshot);
+		} else {
+			mFloatingGroupSnapshot.eraseColor(Color.TRANSPARENT);
+		}
+
+		if(mFloatingGroupView.getVisibility() == View.VISIBLE) {
+			mFloatingGroupView.draw(mFloatingGroupSnapshotCanvas);
+		}
+
+		// The indicator is positioned on the list coordinates
+		mFloatingGroupSnapshotCanvas.save();
+		mFloatingGroupSnapshotCanvas.translate(-mFloatingGroupView.getLeft(), -mFloatingGroupView.getTop());
+		drawFloatingGroupIndicator(mFloatingGroupSnapshotCanvas);
+		mFloatingGroupSnapshotCanvas.restore();
+
+		mFloatingGroupSnapshotValid = true;
+		return true;
+	}
+
+	private void releaseFloatingGroupSnapshot() {
+		if(mFloatingGroupSnapshot != null) {
+			mFloatingGroupSnapshot.recycle();
+			mFloatingGroupSnapshot = null;
+		}
+		mFloatingGroupSnapshotValid = false;
+	}
+
 	private void drawFloatingGroupIndicator(Canvas canvas) {
-		final Drawable groupIndicator = (Drawable) ReflectionUtils.getFieldValue(ExpandableListView.class, "mGroupIndicator", FloatingGroupExpandableListView.this);
-		if(groupIndicator != null) {
-			final int stateSetIndex =
-					(mAdapter.isGroupExpanded(mFloatingGroupPosition) ? 1 : 0) | // Expanded?
-					(mAdapter.getChildrenCount(mFloatingGroupPosition) > 0 ? 2 : 0); // Empty?
-			groupIndicator.setState(GROUP_STATE_SETS[stateSetIndex]);
+		prepareFloatingGroupIndicator();
+		if(mFloatingGroupIndicator != null) {
+			// The indicator bounds are relative to the floating group, so it only needs to be translated while scrolling
+			if(mFloatingGroupIndicatorHeight != mFloatingGroupView.getHeight()) {
+				mFloatingGroupIndicatorHeight = mFloatingGroupView.getHeight();
+				mIndicatorRect.bottom = mFloatingGroupIndicatorHeight;
+				mFloatingGroupIndicator.setBounds(mIndicatorRect);
+			}
 
-			final int indicatorLeft = (Integer) ReflectionUtils.getFieldValue(ExpandableListView.class, "mIndicatorLeft", FloatingGroupExpandableListView.this);
-			final int indicatorRight = (Integer) ReflectionUtils.getFieldValue(ExpandableListView.class, "mIndicatorRight", FloatingGroupExpandableListView.this);
+			canvas.save();
+			canvas.translate(0, mFloatingGroupView.getTop());
+			mFloatingGroupIndicator.draw(canvas);
+			canvas.restore();
+		}
+	}
+
+	private void prepareFloatingGroupIndicator() {
+		if(mFloatingGroupIndicatorDirty) {
+			mFloatingGroupIndicatorDirty = false;
+
+			// A copy of the group indicator is used, so its state isn't changed when the ExpandableListView draws the indicators of the groups in the list
+			final Drawable groupIndicator = (Drawable) ReflectionUtils.getFieldValue(ExpandableListView.class, "mGroupIndicator", FloatingGroupExpandableListView.this);
+			if(groupIndicator != mGroupIndicator) {
+				mGroupIndicator = groupIndicator;
+				if(groupIndicator != null && groupIndicator.getConstantState() != null) {
+					mFloatingGroupIndicator = groupIndicator.getConstantState().newDrawable(getResources()).mutate();
+				} else {
+					mFloatingGroupIndicator = groupIndicator;
+				}
+				mFloatingGroupIndicatorStateDirty = true;
+			}
+
+			final int indicatorLeft = ReflectionUtils.getInt(ExpandableListView.class, "mIndicatorLeft", FloatingGroupExpandableListView.this, 0);
+			final int indicatorRight = ReflectionUtils.getInt(ExpandableListView.class, "mIndicatorRight", FloatingGroupExpandableListView.this, 0);
 
 			if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-				mIndicatorRect.set(indicatorLeft + getPaddingLeft(), mFloatingGroupView.getTop(), indicatorRight + getPaddingLeft(), mFloatingGroupView.getBottom());
+				mIndicatorRect.set(indicatorLeft + getPaddingLeft(), 0, indicatorRight + getPaddingLeft(), 0);
 			} else {
-				mIndicatorRect.set(indicatorLeft, mFloatingGroupView.getTop(), indicatorRight, mFloatingGroupView.getBottom());
+				mIndicatorRect.set(indicatorLeft, 0, indicatorRight, 0);
 			}
+			// The bounds are set again on the next draw
+			mFloatingGroupIndicatorHeight = -1;
+		}
 
-			groupIndicator.setBounds(mIndicatorRect);
-			groupIndicator.draw(canvas);
+		if(mFloatingGroupIndicatorStateDirty && mFloatingGroupIndicator != null) {
+			mFloatingGroupIndicatorStateDirty = false;
+			final int stateSetIndex =
+					(mAdapter.isGroupExpanded(mFloatingGroupPosition) ? 1 : 0) | // Expanded?
+					(mAdapter.getChildrenCount(mFloatingGroupPosition) > 0 ? 2 : 0); // Empty?
+			mFloatingGroupIndicator.setState(GROUP_STATE_SETS[stateSetIndex]);
 		}
 	}
 
+	private void invalidateFloatingGroupIndicator() {
+		mFloatingGroupIndicatorDirty = true;
+		invalidate();
+	}
+
 	public interface OnScrollFloatingGroupListener {
 		public void onScrollFloatingGroupListener(View floatingGroupView, int scrollY);
 	}
+
+	public interface OnFloatingGroupScrollChangedListener {
+		// Called once for each floating group view, the returned holder is passed back on every change of that view, so it can keep its child views
+		public Object onCreateFloatingGroupHolder(View floatingGroupView);
+		// pushOutFraction goes from 0, when the floating group is fully shown, to 1, when it has been pushed out by the next group
+		public void onFloatingGroupScrollChanged(View floatingGroupView, Object holder, int groupPosition, float pushOutFraction, int scrollY);
+	}
 }
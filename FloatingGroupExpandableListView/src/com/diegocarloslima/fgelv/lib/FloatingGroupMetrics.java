@@ -0,0 +1,192 @@
+package com.diegocarloslima.fgelv.lib;
+
+// Aggregates what the floating group costs, so it can be read periodically and exported to any telemetry.
+// It's only updated while set on a FloatingGroupExpandableListView, through setFloatingGroupMetrics(), and can be read from any thread
+public class FloatingGroupMetrics {
+
+	// 60 fps frame interval
+	private static final long FRAME_INTERVAL_NANOS = 16666667;
+
+	private long mRebindCount;
+	private long mMeasureCount;
+	private long mLayoutCount;
+	private long mReflectiveCallCount;
+	private long mFrameCount;
+	private long mDroppedFrameCount;
+
+	private final Histogram mCreateFloatingGroupViewTimes = new Histogram();
+	private final Histogram mDispatchDrawTimes = new Histogram();
+
+	private long mLastFrameTime;
+
+	public synchronized long getRebindCount() {
+		return mRebindCount;
+	}
+
+	public synchronized long getMeasureCount() {
+		return mMeasureCount;
+	}
+
+	public synchronized long getLayoutCount() {
+		return mLayoutCount;
+	}
+
+	public synchronized long getReflectiveCallCount() {
+		return mReflectiveCallCount;
+	}
+
+	public synchronized long getFrameCount() {
+		return mFrameCount;
+	}
+
+	// Frames that were missed while scrolling, based on the interval between two consecutive draws
+	public synchronized long getDroppedFrameCount() {
+		return mDroppedFrameCount;
+	}
+
+	// Time spent updating the floating group on each scroll event
+	public synchronized Histogram getCreateFloatingGroupViewTimes() {
+		return new Histogram(mCreateFloatingGroupViewTimes);
+	}
+
+	// Time spent in dispatchDraw on each frame, not counting the list children
+	public synchronized Histogram getDispatchDrawTimes() {
+		return new Histogram(mDispatchDrawTimes);
+	}
+
+	// Returns a copy of the current metrics and starts aggregating them from scratch
+	public synchronized FloatingGroupMetrics snapshotAndReset() {
+		final FloatingGroupMetrics snapshot = new FloatingGroupMetrics();
+		snapshot.mRebindCount = mRebindCount;
+		snapshot.mMeasureCount = mMeasureCount;
+		snapshot.mLayoutCount = mLayoutCount;
+		snapshot.mReflectiveCallCount = mReflectiveCallCount;
+		snapshot.mFrameCount = mFrameCount;
+		snapshot.mDroppedFrameCount = mDroppedFrameCount;
+		snapshot.mCreateFloatingGroupViewTimes.add(mCreateFloatingGroupViewTimes);
+		snapshot.mDispatchDrawTimes.add(mDispatchDrawTimes);
+		reset();
+		return snapshot;
+	}
+
+	public synchronized void reset() {
+		mRebindCount = 0;
+		mMeasureCount = 0;
+		mLayoutCount = 0;
+		mReflectiveCallCount = 0;
+		mFrameCount = 0;
+		mDroppedFrameCount = 0;
+		mCreateFloatingGroupViewTimes.clear();
+		mDispatchDrawTimes.clear();
+		mLastFrameTime = 0;
+	}
+
+	synchronized void onRebind() {
+		mRebindCount++;
+	}
+
+	synchronized void onMeasure() {
+		mMeasureCount++;
+	}
+
+	synchronized void onLayout() {
+		mLayoutCount++;
+	}
+
+	synchronized void onCreateFloatingGroupView(long durationNanos, int reflectiveCallCount) {
+		mCreateFloatingGroupViewTimes.record(durationNanos);
+		mReflectiveCallCount += reflectiveCallCount;
+	}
+
+	synchronized void onDispatchDraw(long frameTimeNanos, long durationNanos, int reflectiveCallCount, boolean scrolling) {
+		mFrameCount++;
+		mDispatchDrawTimes.record(durationNanos);
+		mReflectiveCallCount += reflectiveCallCount;
+
+		if(scrolling && mLastFrameTime != 0) {
+			final long frameInterval = frameTimeNanos - mLastFrameTime;
+			if(frameInterval > FRAME_INTERVAL_NANOS + FRAME_INTERVAL_NANOS / 2) {
+				mDroppedFrameCount += frameInterval / FRAME_INTERVAL_NANOS - 1;
+			}
+		}
+		mLastFrameTime = scrolling ? frameTimeNanos : 0;
+	}
+
+	// Durations grouped into fixed buckets, from under 50us up to over 16ms
+	public static class Histogram {
+
+		private static final long[] BUCKET_UPPER_BOUNDS_NANOS = {
+			50000, 100000, 250000, 500000, 1000000, 2000000, 4000000, 8000000, 16000000, Long.MAX_VALUE
+		};
+
+		private final long[] mBucketCounts = new long[BUCKET_UPPER_BOUNDS_NANOS.length];
+		private long mCount;
+		private long mTotalNanos;
+		private long mMaxNanos;
+
+		Histogram() {
+		}
+
+		Histogram(Histogram histogram) {
+			add(histogram);
+		}
+
+		public int getBucketCount() {
+			return mBucketCounts.length;
+		}
+
+		// The upper bound of the last bucket is Long.MAX_VALUE
+		public long getBucketUpperBoundNanos(int bucket) {
+			return BUCKET_UPPER_BOUNDS_NANOS[bucket];
+		}
+
+		public long getBucketValueCount(int bucket) {
+			return mBucketCounts[bucket];
+		}
+
+		public long getCount() {
+			return mCount;
+		}
+
+		public long getTotalNanos() {
+			return mTotalNanos;
+		}
+
+		public long getMaxNanos() {
+			return mMaxNanos;
+		}
+
+		public long getAverageNanos() {
+			return mCount > 0 ? mTotalNanos / mCount : 0;
+		}
+
+		void record(long nanos) {
+			int bucket = 0;
+			while(nanos > BUCKET_UPPER_BOUNDS_NANOS[bucket]) {
+				bucket++;
+			}
+			mBucketCounts[bucket]++;
+			mCount++;
+			mTotalNanos += nanos;
+			mMaxNanos = Math.max(mMaxNanos, nanos);
+		}
+
+		void add(Histogram histogram) {
+			for(int i = 0; i < mBucketCounts.length; i++) {
+				mBucketCounts[i] += histogram.mBucketCounts[i];
+			}
+			mCount += histogram.mCount;
+			mTotalNanos += histogram.mTotalNanos;
+			mMaxNanos = Math.max(mMaxNanos, histogram.mMaxNanos);
+		}
+
+		void clear() {
+			for(int i = 0; i < mBucketCounts.length; i++) {
+				mBucketCounts[i] = 0;
+			}
+			mCount = 0;
+			mTotalNanos = 0;
+			mMaxNanos = 0;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.ArrayList;
+
+import android.util.SparseArray;
+
+class FloatingGroupPool {
+
+	// Only a couple of floating group views are in use at the same time, so there's no need to keep more than that for each group type
+	private static final int MAX_SCRAP_FLOATING_GROUPS_PER_TYPE = 2;
+
+	private final SparseArray<ArrayList<FloatingGroup>> mScrapFloatingGroups = new SparseArray<ArrayList<FloatingGroup>>();
+	private int mGroupTypeCount;
+
+	FloatingGroup obtain(int type) {
+		final ArrayList<FloatingGroup> scrap = mScrapFloatingGroups.get(type);
+		if(scrap != null && !scrap.isEmpty()) {
+			return scrap.remove(scrap.size() - 1);
+		}
+		return new FloatingGroup(type);
+	}
+
+	void recycle(FloatingGroup floatingGroup) {
+		if(floatingGroup.view == null) {
+			return;
+		}
+
+		ArrayList<FloatingGroup> scrap = mScrapFloatingGroups.get(floatingGroup.type);
+		if(scrap == null) {
+			scrap = new ArrayList<FloatingGroup>(MAX_SCRAP_FLOATING_GROUPS_PER_TYPE);
+			mScrapFloatingGroups.put(floatingGroup.type, scrap);
+		}
+
+		if(scrap.size() < MAX_SCRAP_FLOATING_GROUPS_PER_TYPE) {
+			floatingGroup.invalidate();
+			scrap.add(floatingGroup);
+		}
+	}
+
+	// The scrap views are kept across data set changes, unless the group types aren't the same anymore
+	void setGroupTypeCount(int groupTypeCount) {
+		if(mGroupTypeCount != groupTypeCount) {
+			mGroupTypeCount = groupTypeCount;
+			clear();
+		}
+	}
+
+	void clear() {
+		mScrapFloatingGroups.clear();
+	}
+}
@@ -0,0 +1,63 @@
+package com.diegocarloslima.fgelv.lib;
+
+import android.widget.AdapterView;
+
+// A structural change of the groups, used to move the state kept by group position (expanded state, floating groups) along with the groups
+class GroupPositionChange {
+
+	static final int TYPE_INSERTED = 0;
+	static final int TYPE_REMOVED = 1;
+	static final int TYPE_MOVED = 2;
+
+	final int type;
+	final int fromGroupPosition;
+	// The number of groups inserted or removed, or the new position of the moved group
+	final int value;
+
+	private GroupPositionChange(int type, int fromGroupPosition, int value) {
+		this.type = type;
+		this.fromGroupPosition = fromGroupPosition;
+		this.value = value;
+	}
+
+	static GroupPositionChange inserted(int fromGroupPosition, int groupCount) {
+		return new GroupPositionChange(TYPE_INSERTED, fromGroupPosition, groupCount);
+	}
+
+	static GroupPositionChange removed(int fromGroupPosition, int groupCount) {
+		return new GroupPositionChange(TYPE_REMOVED, fromGroupPosition, groupCount);
+	}
+
+	static GroupPositionChange moved(int fromGroupPosition, int toGroupPosition) {
+		return new GroupPositionChange(TYPE_MOVED, fromGroupPosition, toGroupPosition);
+	}
+
+	// Returns the position of the group after the change, or INVALID_POSITION if it was removed
+	int apply(int groupPosition) {
+		if(groupPosition < 0) {
+			return groupPosition;
+		}
+
+		switch(type) {
+		case TYPE_INSERTED:
+			return groupPosition >= fromGroupPosition ? groupPosition + value : groupPosition;
+		case TYPE_REMOVED:
+			if(groupPosition < fromGroupPosition) {
+				return groupPosition;
+			}
+			return groupPosition < fromGroupPosition + value ? AdapterView.INVALID_POSITION : groupPosition - value;
+		case TYPE_MOVED:
+			if(groupPosition == fromGroupPosition) {
+				return value;
+			}
+			if(fromGroupPosition < value && groupPosition > fromGroupPosition && groupPosition <= value) {
+				return groupPosition - 1;
+			}
+			if(fromGroupPosition > value && groupPosition >= value && groupPosition < fromGroupPosition) {
+				return groupPosition + 1;
+			}
+			return groupPosition;
+		}
+		return groupPosition;
+	}
+}
@@ -0,0 +1,88 @@
+package com.diegocarloslima.fgelv.lib;
+
+// A Fenwick tree over the flat size of each group (the group itself plus its visible children), so the flat position
+// where a group starts and the group found at a flat position can both be looked up in O(log n)
+class GroupPositionIndex {
+
+	private int mGroupCount;
+	private int[] mVisibleChildrenCounts = new int[0];
+	private int[] mTree = new int[1];
+
+	// Rebuilds the whole index in O(n), visibleChildrenCounts holds the number of visible children of each group
+	void build(int[] visibleChildrenCounts, int groupCount) {
+		if(mVisibleChildrenCounts.length < groupCount) {
+			mVisibleChildrenCounts = new int[groupCount];
+			mTree = new int[groupCount + 1];
+		}
+		mGroupCount = groupCount;
+
+		for(int i = 1; i <= groupCount; i++) {
+			mTree[i] = 0;
+		}
+
+		for(int i = 1; i <= groupCount; i++) {
+			mVisibleChildrenCounts[i - 1] = visibleChildrenCounts[i - 1];
+			mTree[i] += 1 + visibleChildrenCounts[i - 1];
+			final int parent = i + (i & -i);
+			if(parent <= groupCount) {
+				mTree[parent] += mTree[i];
+			}
+		}
+	}
+
+	void setVisibleChildrenCount(int groupPosition, int visibleChildrenCount) {
+		if(groupPosition < 0 || groupPosition >= mGroupCount) {
+			return;
+		}
+
+		final int delta = visibleChildrenCount - mVisibleChildrenCounts[groupPosition];
+		if(delta == 0) {
+			return;
+		}
+
+		mVisibleChildrenCounts[groupPosition] = visibleChildrenCount;
+		for(int i = groupPosition + 1; i <= mGroupCount; i += i & -i) {
+			mTree[i] += delta;
+		}
+	}
+
+	int getVisibleChildrenCount(int groupPosition) {
+		return mVisibleChildrenCounts[groupPosition];
+	}
+
+	int getGroupCount() {
+		return mGroupCount;
+	}
+
+	// Returns the flat position of the group, or the total flat count when groupPosition is past the last group
+	int getGroupFlatPosition(int groupPosition) {
+		int flatPosition = 0;
+		for(int i = Math.min(groupPosition, mGroupCount); i > 0; i -= i & -i) {
+			flatPosition += mTree[i];
+		}
+		return flatPosition;
+	}
+
+	int getFlatCount() {
+		return getGroupFlatPosition(mGroupCount);
+	}
+
+	// Returns the group that contains the flat position, or -1 if there's none
+	int getGroupForFlatPosition(int flatPosition) {
+		if(flatPosition < 0 || mGroupCount == 0) {
+			return -1;
+		}
+
+		int groupPosition = 0;
+		int remaining = flatPosition;
+		for(int step = Integer.highestOneBit(mGroupCount); step > 0; step >>= 1) {
+			final int next = groupPosition + step;
+			if(next <= mGroupCount && mTree[next] <= remaining) {
+				groupPosition = next;
+				remaining -= mTree[next];
+			}
+		}
+
+		return groupPosition < mGroupCount ? groupPosition : -1;
+	}
+}
@@ -0,0 +1,110 @@
+package com.diegocarloslima.fgelv.lib;
+
+// Maps longs to objects without boxing the keys, like LongSparseBooleanArray does for booleans. android.util.LongSparseArray is only
+// available since API 16
+class LongSparseArray<E> {
+
+	private long[] mKeys;
+	private Object[] mValues;
+	private int mSize;
+
+	LongSparseArray() {
+		this(10);
+	}
+
+	LongSparseArray(int initialCapacity) {
+		mKeys = new long[initialCapacity];
+		mValues = new Object[initialCapacity];
+	}
+
+	E get(long key) {
+		final int i = binarySearch(key);
+		return i >= 0 ? valueAt(i) : null;
+	}
+
+	void put(long key, E value) {
+		int i = binarySearch(key);
+		if(i >= 0) {
+			mValues[i] = value;
+			return;
+		}
+
+		i = ~i;
+		ensureCapacity(mSize + 1);
+		System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+		System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+	}
+
+	void delete(long key) {
+		final int i = binarySearch(key);
+		if(i >= 0) {
+			removeAt(i);
+		}
+	}
+
+	void removeAt(int index) {
+		System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+		System.arraycopy(mValues, index + 1, mValues, index, mSize - index - 1);
+		mSize--;
+		// So the removed value can be collected
+		mValues[mSize] = null;
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	long keyAt(int index) {
+		return mKeys[index];
+	}
+
+	@SuppressWarnings("unchecked")
+	E valueAt(int index) {
+		return (E) mValues[index];
+	}
+
+	void setValueAt(int index, E value) {
+		mValues[index] = value;
+	}
+
+	void clear() {
+		for(int i = 0; i < mSize; i++) {
+			mValues[i] = null;
+		}
+		mSize = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > mKeys.length) {
+			final int newCapacity = Math.max(capacity, mKeys.length * 2);
+			final long[] keys = new long[newCapacity];
+			final Object[] values = new Object[newCapacity];
+			System.arraycopy(mKeys, 0, keys, 0, mSize);
+			System.arraycopy(mValues, 0, values, 0, mSize);
+			mKeys = keys;
+			mValues = values;
+		}
+	}
+
+	private int binarySearch(long key) {
+		int low = 0;
+		int high = mSize - 1;
+
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			final long midKey = mKeys[mid];
+
+			if(midKey < key) {
+				low = mid + 1;
+			} else if(midKey > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return ~low;
+	}
+}
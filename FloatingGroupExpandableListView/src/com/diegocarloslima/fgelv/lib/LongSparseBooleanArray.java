@@ -0,0 +1,108 @@
+package com.diegocarloslima.fgelv.lib;
+
+// Maps longs to booleans like SparseBooleanArray does for ints, without boxing the keys. android.util.LongSparseArray is only available since API 16
+class LongSparseBooleanArray {
+
+	private long[] mKeys;
+	private boolean[] mValues;
+	private int mSize;
+
+	LongSparseBooleanArray() {
+		this(10);
+	}
+
+	LongSparseBooleanArray(int initialCapacity) {
+		mKeys = new long[initialCapacity];
+		mValues = new boolean[initialCapacity];
+	}
+
+	boolean get(long key, boolean valueIfKeyNotFound) {
+		final int i = binarySearch(key);
+		return i >= 0 ? mValues[i] : valueIfKeyNotFound;
+	}
+
+	void put(long key, boolean value) {
+		int i = binarySearch(key);
+		if(i >= 0) {
+			mValues[i] = value;
+			return;
+		}
+
+		i = ~i;
+		ensureCapacity(mSize + 1);
+		System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+		System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+	}
+
+	// Faster than put() when the key is greater than all the keys already in the array
+	void append(long key, boolean value) {
+		if(mSize > 0 && key <= mKeys[mSize - 1]) {
+			put(key, value);
+			return;
+		}
+
+		ensureCapacity(mSize + 1);
+		mKeys[mSize] = key;
+		mValues[mSize] = value;
+		mSize++;
+	}
+
+	void delete(long key) {
+		final int i = binarySearch(key);
+		if(i >= 0) {
+			System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i - 1);
+			System.arraycopy(mValues, i + 1, mValues, i, mSize - i - 1);
+			mSize--;
+		}
+	}
+
+	int size() {
+		return mSize;
+	}
+
+	long keyAt(int index) {
+		return mKeys[index];
+	}
+
+	boolean valueAt(int index) {
+		return mValues[index];
+	}
+
+	void clear() {
+		mSize = 0;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if(capacity > mKeys.length) {
+			final int newCapacity = Math.max(capacity, mKeys.length * 2);
+			final long[] keys = new long[newCapacity];
+			final boolean[] values = new boolean[newCapacity];
+			System.arraycopy(mKeys, 0, keys, 0, mSize);
+			System.arraycopy(mValues, 0, values, 0, mSize);
+			mKeys = keys;
+			mValues = values;
+		}
+	}
+
+	private int binarySearch(long key) {
+		int low = 0;
+		int high = mSize - 1;
+
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			final long midKey = mKeys[mid];
+
+			if(midKey < key) {
+				low = mid + 1;
+			} else if(midKey > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return ~low;
+	}
+}
@@ -0,0 +1,447 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseExpandableListAdapter;
+
+// An adapter whose children are loaded in pages on a background executor when their group is expanded. Until a page arrives, placeholder
+// rows are shown in its place, and the next page is loaded when its placeholders are shown. The children of collapsed groups are evicted,
+// least recently used first, once more than the cached children budget are kept. The group ids must be stable, since the loaded children
+// are kept by group id. When wrapped by a WrapperExpandableListAdapter, the pages are notified as granular changes
+public abstract class PagedExpandableListAdapter extends BaseExpandableListAdapter {
+
+	private static final int DEFAULT_PAGE_SIZE = 50;
+	private static final int DEFAULT_PLACEHOLDER_COUNT = 3;
+	private static final int DEFAULT_MAX_CACHED_CHILDREN = 500;
+
+	// A page that failed to load is loaded again after this delay, doubled after each further failure up to the max
+	private static final long RETRY_DELAY = 1000;
+	private static final long MAX_RETRY_DELAY = 30000;
+
+	private static final String TAG = PagedExpandableListAdapter.class.getName();
+
+	// Shared by all the adapters that don't have an executor of their own. Its only thread is a daemon, and it's stopped once idle for a
+	// while, so adapters that are no longer used don't keep a thread alive. Without core threads, it works without allowCoreThreadTimeOut()
+	private static final Executor DEFAULT_EXECUTOR = new ThreadPoolExecutor(0, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			final Thread thread = new Thread(runnable, TAG);
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// The least recently used groups first
+	private static final Comparator<GroupChildren> LAST_USED_COMPARATOR = new Comparator<GroupChildren>() {
+
+		@Override
+		public int compare(GroupChildren lhs, GroupChildren rhs) {
+			return lhs.lastUsed < rhs.lastUsed ? -1 : (lhs.lastUsed == rhs.lastUsed ? 0 : 1);
+		}
+	};
+
+	private final Executor mExecutor;
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	private int mPageSize = DEFAULT_PAGE_SIZE;
+	private int mPlaceholderCount = DEFAULT_PLACEHOLDER_COUNT;
+	private int mMaxCachedChildren = DEFAULT_MAX_CACHED_CHILDREN;
+
+	// Keyed by group id. The groups are stamped with mUseCount when they're expanded, collapsed or get a page, and the least recently used
+	// ones are evicted first. Binding their rows isn't a use, so scrolling doesn't change the eviction order
+	private final LongSparseArray<GroupChildren> mGroupChildren = new LongSparseArray<GroupChildren>();
+	private long mUseCount;
+	private int mCachedChildrenCount;
+
+	private WrapperExpandableListAdapter mWrapperAdapter;
+
+	// The children are loaded one page at a time on a single background thread, shared with the other adapters
+	public PagedExpandableListAdapter() {
+		this(DEFAULT_EXECUTOR);
+	}
+
+	public PagedExpandableListAdapter(Executor executor) {
+		mExecutor = executor;
+	}
+
+	// Called on the executor thread. Returns the children of the group from offset, up to limit of them. Fewer children than limit means
+	// there are no more children to load
+	protected abstract List<?> loadChildren(long groupId, int offset, int limit);
+
+	protected abstract View getChildView(int groupPosition, int childPosition, boolean isLastChild, Object child, View convertView, ViewGroup parent);
+
+	protected abstract View getPlaceholderView(int groupPosition, int childPosition, View convertView, ViewGroup parent);
+
+	// The loaded children may have more than one type, the placeholders have a type of their own
+	protected int getLoadedChildType(int groupPosition, int childPosition) {
+		return 0;
+	}
+
+	protected int getLoadedChildTypeCount() {
+		return 1;
+	}
+
+	public void setPageSize(int pageSize) {
+		mPageSize = pageSize;
+	}
+
+	// The number of placeholder rows shown while the next page of a group is loaded
+	public void setPlaceholderCount(int placeholderCount) {
+		mPlaceholderCount = placeholderCount;
+	}
+
+	// How many children of collapsed groups can be kept before they're evicted. The children of expanded groups are never evicted
+	public void setMaxCachedChildren(int maxCachedChildren) {
+		mMaxCachedChildren = maxCachedChildren;
+		trimCachedChildren();
+	}
+
+	public boolean isGroupLoading(int groupPosition) {
+		final GroupChildren groupChildren = mGroupChildren.get(getGroupId(groupPosition));
+		return groupChildren != null && groupChildren.loading;
+	}
+
+	// Whether the last page of the group failed to load. It's loaded again after a delay while the group is expanded, and the group is
+	// notified as changed both when it fails and when it's loaded, so its view can show it
+	public boolean isGroupLoadFailed(int groupPosition) {
+		final GroupChildren groupChildren = mGroupChildren.get(getGroupId(groupPosition));
+		return groupChildren != null && !groupChildren.loading && groupChildren.failureCount > 0;
+	}
+
+	public boolean isPlaceholder(int groupPosition, int childPosition) {
+		final GroupChildren groupChildren = mGroupChildren.get(getGroupId(groupPosition));
+		return groupChildren == null || childPosition >= groupChildren.children.size();
+	}
+
+	// Drops all the loaded children, the expanded groups are loaded again from their first page. They're kept as expanded, so their new
+	// pages aren't evicted
+	public void reload() {
+		// The expanded groups get new children, so the pages still loading for the old ones are dropped when they arrive
+		for(int i = mGroupChildren.size() - 1; i >= 0; i--) {
+			final GroupChildren oldGroupChildren = mGroupChildren.valueAt(i);
+			if(oldGroupChildren.expanded) {
+				final GroupChildren groupChildren = new GroupChildren(oldGroupChildren.groupId);
+				groupChildren.expanded = true;
+				groupChildren.groupPosition = oldGroupChildren.groupPosition;
+				groupChildren.lastUsed = oldGroupChildren.lastUsed;
+				mGroupChildren.setValueAt(i, groupChildren);
+			} else {
+				mGroupChildren.removeAt(i);
+			}
+		}
+		mCachedChildrenCount = 0;
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+
+	@Override
+	public int getChildrenCount(int groupPosition) {
+		final GroupChildren groupChildren = mGroupChildren.get(getGroupId(groupPosition));
+		if(groupChildren == null) {
+			return mPlaceholderCount;
+		}
+		groupChildren.groupPosition = groupPosition;
+		return groupChildren.children.size() + (groupChildren.complete ? 0 : mPlaceholderCount);
+	}
+
+	@Override
+	public Object getChild(int groupPosition, int childPosition) {
+		final GroupChildren groupChildren = mGroupChildren.get(getGroupId(groupPosition));
+		if(groupChildren == null || childPosition >= groupChildren.children.size()) {
+			return null;
+		}
+		groupChildren.groupPosition = groupPosition;
+		return groupChildren.children.get(childPosition);
+	}
+
+	@Override
+	public long getChildId(int groupPosition, int childPosition) {
+		return childPosition;
+	}
+
+	@Override
+	public int getChildType(int groupPosition, int childPosition) {
+		return isPlaceholder(groupPosition, childPosition) ? getLoadedChildTypeCount() : getLoadedChildType(groupPosition, childPosition);
+	}
+
+	@Override
+	public int getChildTypeCount() {
+		return getLoadedChildTypeCount() + 1;
+	}
+
+	@Override
+	public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+		final long groupId = getGroupId(groupPosition);
+		final GroupChildren groupChildren = obtainGroupChildren(groupId);
+		// Only the children of expanded groups are shown. The list may have expanded the group without onGroupExpanded() being called,
+		// as when its instance state is restored
+		groupChildren.expanded = true;
+		groupChildren.groupPosition = groupPosition;
+		if(childPosition < groupChildren.children.size()) {
+			return getChildView(groupPosition, childPosition, isLastChild, groupChildren.children.get(childPosition), convertView, parent);
+		}
+
+		// The placeholders are only shown at the end of the loaded children, so the next page is needed
+		loadNextPage(groupId);
+		return getPlaceholderView(groupPosition, childPosition, convertView, parent);
+	}
+
+	@Override
+	public void onGroupExpanded(int groupPosition) {
+		super.onGroupExpanded(groupPosition);
+		final long groupId = getGroupId(groupPosition);
+		final GroupChildren groupChildren = obtainGroupChildren(groupId);
+		groupChildren.expanded = true;
+		groupChildren.groupPosition = groupPosition;
+		groupChildren.lastUsed = ++mUseCount;
+		if(groupChildren.children.isEmpty()) {
+			loadNextPage(groupId);
+		}
+	}
+
+	@Override
+	public void onGroupCollapsed(int groupPosition) {
+		super.onGroupCollapsed(groupPosition);
+		final GroupChildren groupChildren = mGroupChildren.get(getGroupId(groupPosition));
+		if(groupChildren != null) {
+			groupChildren.expanded = false;
+			groupChildren.groupPosition = groupPosition;
+			groupChildren.lastUsed = ++mUseCount;
+			trimCachedChildren();
+		}
+	}
+
+	void setWrapperAdapter(WrapperExpandableListAdapter wrapperAdapter) {
+		mWrapperAdapter = wrapperAdapter;
+	}
+
+	private GroupChildren obtainGroupChildren(long groupId) {
+		GroupChildren groupChildren = mGroupChildren.get(groupId);
+		if(groupChildren == null) {
+			groupChildren = new GroupChildren(groupId);
+			groupChildren.lastUsed = ++mUseCount;
+			mGroupChildren.put(groupId, groupChildren);
+		}
+		return groupChildren;
+	}
+
+	private void loadNextPage(final long groupId) {
+		final GroupChildren groupChildren = obtainGroupChildren(groupId);
+		// After a failure, the placeholders being shown don't load the page again until the retry delay is over
+		if(groupChildren.loading || groupChildren.complete || SystemClock.uptimeMillis() < groupChildren.retryTime) {
+			return;
+		}
+		groupChildren.loading = true;
+
+		final int offset = groupChildren.children.size();
+		final int limit = mPageSize;
+		mExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				final List<?> page;
+				try {
+					page = loadChildren(groupId, offset, limit);
+				} catch(final RuntimeException e) {
+					mHandler.post(new Runnable() {
+
+						@Override
+						public void run() {
+							onPageFailed(groupId, groupChildren, offset, e);
+						}
+					});
+					return;
+				}
+
+				mHandler.post(new Runnable() {
+
+					@Override
+					public void run() {
+						onPageLoaded(groupId, groupChildren, offset, limit, page);
+					}
+				});
+			}
+		});
+	}
+
+	private void onPageLoaded(long groupId, GroupChildren groupChildren, int offset, int limit, List<?> page) {
+		// The group may have been evicted or reloaded in the meantime
+		if(mGroupChildren.get(groupId) != groupChildren || groupChildren.children.size() != offset) {
+			return;
+		}
+
+		final int pageSize = page != null ? page.size() : 0;
+		final int oldChildrenCount = offset + (groupChildren.complete ? 0 : mPlaceholderCount);
+		final boolean firstPage = offset == 0;
+		final boolean failedBefore = groupChildren.failureCount > 0;
+
+		groupChildren.loading = false;
+		groupChildren.failureCount = 0;
+		groupChildren.retryTime = 0;
+		groupChildren.lastUsed = ++mUseCount;
+		if(pageSize > 0) {
+			groupChildren.children.addAll(page);
+			mCachedChildrenCount += pageSize;
+		}
+		groupChildren.complete = pageSize < limit;
+
+		final int groupPosition = findGroupPosition(groupId, groupChildren);
+		if(groupPosition >= 0) {
+			final int newChildrenCount = offset + pageSize + (groupChildren.complete ? 0 : mPlaceholderCount);
+			notifyChildrenReplaced(groupPosition, offset, oldChildrenCount - offset, newChildrenCount - offset);
+			// The group view, and the floating group, may show whether the group is still loading
+			if(firstPage || groupChildren.complete || failedBefore) {
+				notifyGroupChanged(groupPosition);
+			}
+		}
+
+		trimCachedChildren();
+	}
+
+	// The page is loaded again after the retry delay if the group is still expanded then, or else the next time its placeholders are shown
+	// after the delay
+	private void onPageFailed(final long groupId, final GroupChildren groupChildren, int offset, RuntimeException e) {
+		if(mGroupChildren.get(groupId) != groupChildren || groupChildren.children.size() != offset) {
+			return;
+		}
+
+		// Only the first failure in a row is logged in full, the retries would log the same failure over and over
+		if(groupChildren.failureCount == 0) {
+			Log.w(TAG, Log.getStackTraceString(e));
+		} else {
+			Log.w(TAG, "Retry " + groupChildren.failureCount + " of group " + groupId + " failed: " + e);
+		}
+
+		groupChildren.loading = false;
+		groupChildren.failureCount++;
+		final long retryDelay = Math.min(RETRY_DELAY << Math.min(groupChildren.failureCount - 1, 16), MAX_RETRY_DELAY);
+		groupChildren.retryTime = SystemClock.uptimeMillis() + retryDelay;
+		mHandler.postDelayed(new Runnable() {
+
+			@Override
+			public void run() {
+				if(mGroupChildren.get(groupId) == groupChildren && groupChildren.expanded) {
+					loadNextPage(groupId);
+				}
+			}
+		}, retryDelay);
+
+		final int groupPosition = findGroupPosition(groupId, groupChildren);
+		if(groupPosition >= 0) {
+			notifyGroupChanged(groupPosition);
+		}
+	}
+
+	// The children from fromChildPosition were replaced, the old ones were oldCount and the new ones are newCount
+	private void notifyChildrenReplaced(int groupPosition, int fromChildPosition, int oldCount, int newCount) {
+		if(mWrapperAdapter == null) {
+			notifyDataSetChanged();
+			return;
+		}
+
+		// An insert or a remove lays out all the rows of the group again, so the rows that changed are only notified when the count is the same
+		if(newCount > oldCount) {
+			mWrapperAdapter.notifyChildRangeInserted(groupPosition, fromChildPosition + oldCount, newCount - oldCount);
+		} else if(oldCount > newCount) {
+			mWrapperAdapter.notifyChildRangeRemoved(groupPosition, fromChildPosition + newCount, oldCount - newCount);
+		} else if(newCount > 0) {
+			mWrapperAdapter.notifyChildRangeChanged(groupPosition, fromChildPosition, newCount);
+		}
+	}
+
+	private void notifyGroupChanged(int groupPosition) {
+		if(mWrapperAdapter != null) {
+			mWrapperAdapter.notifyGroupChanged(groupPosition);
+		} else {
+			notifyDataSetChanged();
+		}
+	}
+
+	private void trimCachedChildren() {
+		if(mCachedChildrenCount <= mMaxCachedChildren) {
+			return;
+		}
+
+		final ArrayList<GroupChildren> collapsedGroupChildren = new ArrayList<GroupChildren>();
+		for(int i = 0; i < mGroupChildren.size(); i++) {
+			final GroupChildren groupChildren = mGroupChildren.valueAt(i);
+			if(!groupChildren.expanded) {
+				collapsedGroupChildren.add(groupChildren);
+			}
+		}
+		Collections.sort(collapsedGroupChildren, LAST_USED_COMPARATOR);
+
+		int evictedCount = 0;
+		while(mCachedChildrenCount > mMaxCachedChildren && evictedCount < collapsedGroupChildren.size()) {
+			final GroupChildren groupChildren = collapsedGroupChildren.get(evictedCount++);
+			mGroupChildren.delete(groupChildren.groupId);
+			mCachedChildrenCount -= groupChildren.children.size();
+		}
+
+		// Notified only after the eviction, since the list reads the groups back while it's notified.
+		// The evicted groups are collapsed, only their children count goes back to the placeholders
+		for(int i = 0; i < evictedCount; i++) {
+			final GroupChildren groupChildren = collapsedGroupChildren.get(i);
+			final int groupPosition = findGroupPosition(groupChildren.groupId, groupChildren);
+			if(groupPosition >= 0) {
+				notifyChildrenReplaced(groupPosition, 0, groupChildren.children.size() + (groupChildren.complete ? 0 : mPlaceholderCount), mPlaceholderCount);
+			}
+		}
+	}
+
+	// The position the group was last seen at is checked first, so the groups are only searched for after they moved
+	private int findGroupPosition(long groupId, GroupChildren groupChildren) {
+		final int groupCount = getGroupCount();
+		final int lastGroupPosition = groupChildren.groupPosition;
+		if(lastGroupPosition >= 0 && lastGroupPosition < groupCount && getGroupId(lastGroupPosition) == groupId) {
+			return lastGroupPosition;
+		}
+
+		for(int i = 0; i < groupCount; i++) {
+			if(getGroupId(i) == groupId) {
+				groupChildren.groupPosition = i;
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static class GroupChildren {
+
+		final long groupId;
+		final ArrayList<Object> children = new ArrayList<Object>();
+		// The position the group was last seen at, updated whenever the list reads the group
+		int groupPosition = -1;
+		boolean expanded;
+		boolean loading;
+		boolean complete;
+		// The value of mUseCount when the group was last used
+		long lastUsed;
+		// The failures in a row to load the next page, and the uptime before which it isn't loaded again
+		int failureCount;
+		long retryTime;
+
+		GroupChildren(long groupId) {
+			this.groupId = groupId;
+		}
+	}
+}
@@ -2,6 +2,9 @@ package com.diegocarloslima.fgelv.lib;
 
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 
 import android.util.Log;
 
@@ -9,35 +12,196 @@ public class ReflectionUtils {
 
 	private static final String TAG = ReflectionUtils.class.getName();
 
+	// Fields and methods are resolved only once per class. Lookups that failed are cached as well, so they fail fast afterwards
+	private static final HashMap<Class<?>, HashMap<String, FieldEntry>> sFieldCache = new HashMap<Class<?>, HashMap<String, FieldEntry>>();
+	private static final HashMap<Class<?>, HashMap<String, ArrayList<MethodEntry>>> sMethodCache = new HashMap<Class<?>, HashMap<String, ArrayList<MethodEntry>>>();
+	private static final HashMap<String, ClassEntry> sClassCache = new HashMap<String, ClassEntry>();
+
+	// Only used by FloatingGroupMetrics. It's not synchronized, since the views are only accessed from the main thread
+	private static int sReflectiveCallCount;
+	// Cache misses, the only calls that actually look up a class, field or method. Used by the tests to check that lookups stop after warm-up
+	private static int sLookupCount;
+
+	public static Class<?> findClass(String className) {
+		synchronized (sClassCache) {
+			ClassEntry entry = sClassCache.get(className);
+			if(entry == null) {
+				Class<?> clazz = null;
+				sLookupCount++;
+				try {
+					clazz = Class.forName(className);
+				} catch (Exception e) {
+					clazz = null;
+					Log.w(TAG, Log.getStackTraceString(e));
+				}
+				entry = new ClassEntry(clazz);
+				sClassCache.put(className, entry);
+			}
+			return entry.clazz;
+		}
+	}
+
+	public static Field getField(Class<?> fieldClass, String fieldName) {
+		synchronized (sFieldCache) {
+			HashMap<String, FieldEntry> classFields = sFieldCache.get(fieldClass);
+			if(classFields == null) {
+				classFields = new HashMap<String, FieldEntry>();
+				sFieldCache.put(fieldClass, classFields);
+			}
+
+			FieldEntry entry = classFields.get(fieldName);
+			if(entry == null) {
+				Field field = null;
+				sLookupCount++;
+				try {
+					field = fieldClass.getDeclaredField(fieldName);
+					field.setAccessible(true);
+				} catch (Exception e) {
+					field = null;
+					Log.w(TAG, Log.getStackTraceString(e));
+				}
+				entry = new FieldEntry(field);
+				classFields.put(fieldName, entry);
+			}
+			return entry.field;
+		}
+	}
+
+	public static Method getMethod(Class<?> methodClass, String methodName, Class<?>... parameters) {
+		synchronized (sMethodCache) {
+			HashMap<String, ArrayList<MethodEntry>> classMethods = sMethodCache.get(methodClass);
+			if(classMethods == null) {
+				classMethods = new HashMap<String, ArrayList<MethodEntry>>();
+				sMethodCache.put(methodClass, classMethods);
+			}
+
+			ArrayList<MethodEntry> overloads = classMethods.get(methodName);
+			if(overloads == null) {
+				overloads = new ArrayList<MethodEntry>(1);
+				classMethods.put(methodName, overloads);
+			}
+
+			for(int i = 0; i < overloads.size(); i++) {
+				final MethodEntry entry = overloads.get(i);
+				if(Arrays.equals(entry.parameters, parameters)) {
+					return entry.method;
+				}
+			}
+
+			Method method = null;
+			sLookupCount++;
+			try {
+				method = methodClass.getDeclaredMethod(methodName, parameters);
+				method.setAccessible(true);
+			} catch (Exception e) {
+				method = null;
+				Log.w(TAG, Log.getStackTraceString(e));
+			}
+			overloads.add(new MethodEntry(parameters, method));
+			return method;
+		}
+	}
+
 	public static Object getFieldValue(Class<?> fieldClass, String fieldName, Object instance) {
-		try {
-			final Field field = fieldClass.getDeclaredField(fieldName);
-			field.setAccessible(true);
-			return field.get(instance);
-		} catch (Exception e) {
-			Log.w(TAG, Log.getStackTraceString(e));
+		final Field field = getField(fieldClass, fieldName);
+		if(field != null) {
+			sReflectiveCallCount++;
+			try {
+				return field.get(instance);
+			} catch (Exception e) {
+				Log.w(TAG, Log.getStackTraceString(e));
+			}
 		}
 		return null;
 	}
-	
+
 	public static void setFieldValue(Class<?> fieldClass, String fieldName, Object instance, Object value) {
-		try {
-			final Field field = fieldClass.getDeclaredField(fieldName);
-			field.setAccessible(true);
-			field.set(instance, value);
-		} catch (Exception e) {
-			Log.w(TAG, Log.getStackTraceString(e));
+		final Field field = getField(fieldClass, fieldName);
+		if(field != null) {
+			sReflectiveCallCount++;
+			try {
+				field.set(instance, value);
+			} catch (Exception e) {
+				Log.w(TAG, Log.getStackTraceString(e));
+			}
+		}
+	}
+
+	public static int getInt(Class<?> fieldClass, String fieldName, Object instance, int defaultValue) {
+		final Field field = getField(fieldClass, fieldName);
+		if(field != null) {
+			sReflectiveCallCount++;
+			try {
+				return field.getInt(instance);
+			} catch (Exception e) {
+				Log.w(TAG, Log.getStackTraceString(e));
+			}
+		}
+		return defaultValue;
+	}
+
+	public static void setInt(Class<?> fieldClass, String fieldName, Object instance, int value) {
+		final Field field = getField(fieldClass, fieldName);
+		if(field != null) {
+			sReflectiveCallCount++;
+			try {
+				field.setInt(instance, value);
+			} catch (Exception e) {
+				Log.w(TAG, Log.getStackTraceString(e));
+			}
 		}
 	}
 
 	public static Object invokeMethod(Class<?> methodClass, String methodName, Class<?>[] parameters, Object instance, Object... arguments) {
-		try {
-			final Method method = methodClass.getDeclaredMethod(methodName, parameters);
-			method.setAccessible(true);
-			return method.invoke(instance, arguments);
-		} catch (Exception e) {
-			Log.w(TAG, Log.getStackTraceString(e));
+		final Method method = getMethod(methodClass, methodName, parameters);
+		if(method != null) {
+			sReflectiveCallCount++;
+			try {
+				return method.invoke(instance, arguments);
+			} catch (Exception e) {
+				Log.w(TAG, Log.getStackTraceString(e));
+			}
 		}
 		return null;
 	}
+
+	static int getReflectiveCallCount() {
+		return sReflectiveCallCount;
+	}
+
+	static int getLookupCount() {
+		return sLookupCount;
+	}
+
+	private static class ClassEntry {
+
+		// A null class means the lookup has already failed
+		final Class<?> clazz;
+
+		ClassEntry(Class<?> clazz) {
+			this.clazz = clazz;
+		}
+	}
+
+	private static class FieldEntry {
+
+		// A null field means the lookup has already failed
+		final Field field;
+
+		FieldEntry(Field field) {
+			this.field = field;
+		}
+	}
+
+	private static class MethodEntry {
+
+		final Class<?>[] parameters;
+		// A null method means the lookup has already failed
+		final Method method;
+
+		MethodEntry(Class<?>[] parameters, Method method) {
+			this.parameters = parameters;
+			this.method = method;
+		}
+	}
 }
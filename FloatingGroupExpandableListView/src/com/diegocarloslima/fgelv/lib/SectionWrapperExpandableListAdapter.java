@@ -0,0 +1,63 @@
+package com.diegocarloslima.fgelv.lib;
+
+import android.widget.ExpandableListAdapter;
+import android.widget.SectionIndexer;
+
+// A WrapperExpandableListAdapter that is also a SectionIndexer, for lists that use the fast scroller with its section overlay. Each group is a
+// section, unless the wrapped adapter is a SectionIndexer, whose sections are then used. As the fast scroller expects from an ExpandableListView
+// adapter, the position for a section is a group position, while the section for a position takes a flat list position. Both are found in
+// O(log n) at most
+public class SectionWrapperExpandableListAdapter extends WrapperExpandableListAdapter implements SectionIndexer {
+
+	// The group sections, built lazily after each change of the groups
+	private Object[] mSections;
+
+	public SectionWrapperExpandableListAdapter(ExpandableListAdapter adapter) {
+		super(adapter);
+	}
+
+	@Override
+	public Object[] getSections() {
+		final ExpandableListAdapter adapter = getWrappedAdapter();
+		if(adapter instanceof SectionIndexer) {
+			return ((SectionIndexer) adapter).getSections();
+		}
+
+		if(mSections == null) {
+			final int groupCount = adapter.getGroupCount();
+			mSections = new Object[groupCount];
+			for(int i = 0; i < groupCount; i++) {
+				mSections[i] = adapter.getGroup(i);
+			}
+		}
+		return mSections;
+	}
+
+	@Override
+	public int getPositionForSection(int section) {
+		final ExpandableListAdapter adapter = getWrappedAdapter();
+		if(adapter instanceof SectionIndexer) {
+			return ((SectionIndexer) adapter).getPositionForSection(section);
+		}
+		return Math.max(0, Math.min(section, adapter.getGroupCount() - 1));
+	}
+
+	@Override
+	public int getSectionForPosition(int position) {
+		final ExpandableListAdapter adapter = getWrappedAdapter();
+		int groupPosition = getGroupForFlatPosition(position);
+		if(groupPosition < 0) {
+			groupPosition = position < 0 ? 0 : adapter.getGroupCount() - 1;
+		}
+
+		if(adapter instanceof SectionIndexer) {
+			return ((SectionIndexer) adapter).getSectionForPosition(groupPosition);
+		}
+		return Math.max(0, groupPosition);
+	}
+
+	@Override
+	void onGroupDataChanged() {
+		mSections = null;
+	}
+}
@@ -0,0 +1,74 @@
+package com.diegocarloslima.fgelv.lib;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.widget.BaseExpandableListAdapter;
+
+// An adapter backed by an ExpandableListSnapshot. A new snapshot can be built on a worker thread and published from any thread, it's swapped
+// in on the main thread with a single change notification. Since the snapshot group ids are stable, the WrapperExpandableListAdapter keeps
+// the expanded groups, and the floating group follows its group, across the swap
+public abstract class SnapshotExpandableListAdapter extends BaseExpandableListAdapter {
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	// Only read and swapped on the main thread
+	private ExpandableListSnapshot mSnapshot = ExpandableListSnapshot.EMPTY;
+
+	public ExpandableListSnapshot getSnapshot() {
+		return mSnapshot;
+	}
+
+	public void publishSnapshot(final ExpandableListSnapshot snapshot) {
+		if(Looper.myLooper() == Looper.getMainLooper()) {
+			setSnapshot(snapshot);
+		} else {
+			mHandler.post(new Runnable() {
+
+				@Override
+				public void run() {
+					setSnapshot(snapshot);
+				}
+			});
+		}
+	}
+
+	private void setSnapshot(ExpandableListSnapshot snapshot) {
+		mSnapshot = snapshot != null ? snapshot : ExpandableListSnapshot.EMPTY;
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public int getGroupCount() {
+		return mSnapshot.getGroupCount();
+	}
+
+	@Override
+	public int getChildrenCount(int groupPosition) {
+		return mSnapshot.getChildrenCount(groupPosition);
+	}
+
+	@Override
+	public Object getGroup(int groupPosition) {
+		return mSnapshot.getGroup(groupPosition);
+	}
+
+	@Override
+	public Object getChild(int groupPosition, int childPosition) {
+		return mSnapshot.getChild(groupPosition, childPosition);
+	}
+
+	@Override
+	public long getGroupId(int groupPosition) {
+		return mSnapshot.getGroupId(groupPosition);
+	}
+
+	@Override
+	public long getChildId(int groupPosition, int childPosition) {
+		return mSnapshot.getChildId(groupPosition, childPosition);
+	}
+
+	@Override
+	public boolean hasStableIds() {
+		return true;
+	}
+}
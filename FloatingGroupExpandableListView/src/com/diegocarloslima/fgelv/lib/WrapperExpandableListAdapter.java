@@ -6,14 +6,47 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.BaseExpandableListAdapter;
 import android.widget.ExpandableListAdapter;
+import android.widget.HeterogeneousExpandableList;
+
+import java.util.Arrays;
 
 public class WrapperExpandableListAdapter extends BaseExpandableListAdapter {
 
     private final ExpandableListAdapter mWrappedAdapter;
     private final SparseBooleanArray mGroupExpandedMap = new SparseBooleanArray();
 
+    // When the adapter has stable ids, the expanded state is also kept by group id, so it follows the groups when they're inserted, removed or moved
+    private final LongSparseBooleanArray mGroupIdExpandedMap = new LongSparseBooleanArray();
+    private long[] mExpandedGroupIds = new long[0];
+
+    // Flat positions of the groups, updated on expand and collapse and rebuilt lazily after data set changes
+    private final GroupPositionIndex mGroupPositionIndex = new GroupPositionIndex();
+    private int[] mVisibleChildrenCounts = new int[0];
+
+    // Whether the expanded state and the position index are in sync with the wrapped adapter data
+    private boolean mGroupStateValid;
+
+    // Set by the FloatingGroupExpandableListView, so granular changes only update the affected rows
+    private OnChangeListener mOnChangeListener;
+
     public WrapperExpandableListAdapter(ExpandableListAdapter adapter) {
         mWrappedAdapter = adapter;
+        if(adapter instanceof PagedExpandableListAdapter) {
+            ((PagedExpandableListAdapter) adapter).setWrapperAdapter(this);
+        }
+        mWrappedAdapter.registerDataSetObserver(new DataSetObserver() {
+            @Override
+            public void onChanged() {
+                mGroupStateValid = false;
+                onGroupDataChanged();
+            }
+
+            @Override
+            public void onInvalidated() {
+                mGroupStateValid = false;
+                onGroupDataChanged();
+            }
+        });
     }
 
     @Override
@@ -63,17 +96,7 @@ public class WrapperExpandableListAdapter extends BaseExpandableListAdapter {
 
     @Override
     public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
-        if(convertView != null) {
-            final Object tag = convertView.getTag(R.id.fgelv_tag_changed_visibility);
-            if(tag instanceof Boolean) {
-                final boolean changedVisibility = (Boolean) tag;
-                if(changedVisibility) {
-                    convertView.setVisibility(View.VISIBLE);
-                }
-            }
-            convertView.setTag(R.id.fgelv_tag_changed_visibility, null);
-        }
-        mGroupExpandedMap.put(groupPosition, isExpanded);
+        setGroupExpanded(groupPosition, isExpanded);
         return mWrappedAdapter.getGroupView(groupPosition, isExpanded, convertView, parent);
     }
 
@@ -82,6 +105,61 @@ public class WrapperExpandableListAdapter extends BaseExpandableListAdapter {
         return mWrappedAdapter.getChildView(groupPosition, childPosition, isLastChild, convertView, parent);
     }
 
+    // Binds the payload of a change to a group view that is already shown, if the wrapped adapter is a PayloadBinder. Otherwise the view is bound again.
+    // viewType is the list item view type the view was created for, in which the child types follow the group types. A view of another type
+    // is never handed to the wrapped adapter, as the list recycler wouldn't either, null is returned instead so the list is laid out again
+    View rebindGroupView(int groupPosition, boolean isExpanded, View view, int viewType, Object payload, ViewGroup parent) {
+        if(viewType != getGroupType(groupPosition)) {
+            return null;
+        }
+        if(payload != null && mWrappedAdapter instanceof PayloadBinder && ((PayloadBinder) mWrappedAdapter).onBindGroupPayload(groupPosition, isExpanded, view, payload)) {
+            return view;
+        }
+        return getGroupView(groupPosition, isExpanded, view, parent);
+    }
+
+    View rebindChildView(int groupPosition, int childPosition, boolean isLastChild, View view, int viewType, Object payload, ViewGroup parent) {
+        if(viewType != getGroupTypeCount() + getChildType(groupPosition, childPosition)) {
+            return null;
+        }
+        if(payload != null && mWrappedAdapter instanceof PayloadBinder && ((PayloadBinder) mWrappedAdapter).onBindChildPayload(groupPosition, childPosition, isLastChild, view, payload)) {
+            return view;
+        }
+        return getChildView(groupPosition, childPosition, isLastChild, view, parent);
+    }
+
+    @Override
+    public int getGroupType(int groupPosition) {
+        if(mWrappedAdapter instanceof HeterogeneousExpandableList) {
+            return ((HeterogeneousExpandableList) mWrappedAdapter).getGroupType(groupPosition);
+        }
+        return super.getGroupType(groupPosition);
+    }
+
+    @Override
+    public int getGroupTypeCount() {
+        if(mWrappedAdapter instanceof HeterogeneousExpandableList) {
+            return ((HeterogeneousExpandableList) mWrappedAdapter).getGroupTypeCount();
+        }
+        return super.getGroupTypeCount();
+    }
+
+    @Override
+    public int getChildType(int groupPosition, int childPosition) {
+        if(mWrappedAdapter instanceof HeterogeneousExpandableList) {
+            return ((HeterogeneousExpandableList) mWrappedAdapter).getChildType(groupPosition, childPosition);
+        }
+        return super.getChildType(groupPosition, childPosition);
+    }
+
+    @Override
+    public int getChildTypeCount() {
+        if(mWrappedAdapter instanceof HeterogeneousExpandableList) {
+            return ((HeterogeneousExpandableList) mWrappedAdapter).getChildTypeCount();
+        }
+        return super.getChildTypeCount();
+    }
+
     @Override
     public boolean isChildSelectable(int groupPosition, int childPosition) {
         return mWrappedAdapter.isChildSelectable(groupPosition, childPosition);
@@ -99,13 +177,13 @@ public class WrapperExpandableListAdapter extends BaseExpandableListAdapter {
 
     @Override
     public void onGroupExpanded(int groupPosition) {
-        mGroupExpandedMap.put(groupPosition, true);
+        setGroupExpanded(groupPosition, true);
         mWrappedAdapter.onGroupExpanded(groupPosition);
     }
 
     @Override
     public void onGroupCollapsed(int groupPosition) {
-        mGroupExpandedMap.put(groupPosition, false);
+        setGroupExpanded(groupPosition, false);
         mWrappedAdapter.onGroupCollapsed(groupPosition);
     }
 
@@ -120,7 +198,341 @@ public class WrapperExpandableListAdapter extends BaseExpandableListAdapter {
     }
 
     public boolean isGroupExpanded(int groupPosition) {
-        final Boolean expanded = mGroupExpandedMap.get(groupPosition);
-        return expanded != null ? expanded : false;
+        validateGroupState();
+        return mGroupExpandedMap.get(groupPosition);
+    }
+
+    // The notify methods below are called instead of notifyDataSetChanged() on the wrapped adapter, after its data has changed.
+    // The expanded state follows the groups, and the list only updates the affected rows, keeping its floating group
+
+    public void notifyGroupInserted(int groupPosition) {
+        notifyGroupRangeInserted(groupPosition, 1);
+    }
+
+    public void notifyGroupRangeInserted(int fromGroupPosition, int groupCount) {
+        notifyGroupPositionsChanged(GroupPositionChange.inserted(fromGroupPosition, groupCount));
+    }
+
+    public void notifyGroupRemoved(int groupPosition) {
+        notifyGroupRangeRemoved(groupPosition, 1);
+    }
+
+    public void notifyGroupRangeRemoved(int fromGroupPosition, int groupCount) {
+        notifyGroupPositionsChanged(GroupPositionChange.removed(fromGroupPosition, groupCount));
+    }
+
+    public void notifyGroupMoved(int fromGroupPosition, int toGroupPosition) {
+        if(fromGroupPosition != toGroupPosition) {
+            notifyGroupPositionsChanged(GroupPositionChange.moved(fromGroupPosition, toGroupPosition));
+        }
+    }
+
+    public void notifyGroupChanged(int groupPosition) {
+        notifyGroupRangeChanged(groupPosition, 1, null);
+    }
+
+    public void notifyGroupChanged(int groupPosition, Object payload) {
+        notifyGroupRangeChanged(groupPosition, 1, payload);
+    }
+
+    // The payload is handed to the wrapped adapter if it's a PayloadBinder, so it can update the views that are shown without binding them again
+    public void notifyGroupRangeChanged(int fromGroupPosition, int groupCount, Object payload) {
+        onGroupDataChanged();
+        if(mOnChangeListener == null || !mOnChangeListener.onGroupsChanged(fromGroupPosition, groupCount, payload)) {
+            notifyWrappedDataSetChanged();
+        }
+    }
+
+    public void notifyChildRangeInserted(int groupPosition, int fromChildPosition, int childCount) {
+        notifyChildrenStructureChanged(groupPosition);
+    }
+
+    public void notifyChildRangeRemoved(int groupPosition, int fromChildPosition, int childCount) {
+        notifyChildrenStructureChanged(groupPosition);
+    }
+
+    public void notifyChildRangeChanged(int groupPosition, int fromChildPosition, int childCount) {
+        notifyChildRangeChanged(groupPosition, fromChildPosition, childCount, null);
+    }
+
+    public void notifyChildRangeChanged(int groupPosition, int fromChildPosition, int childCount, Object payload) {
+        if(mOnChangeListener == null || !mOnChangeListener.onChildrenChanged(groupPosition, fromChildPosition, childCount, payload)) {
+            notifyWrappedDataSetChanged();
+        }
+    }
+
+    // Finds the groups that were removed, inserted or moved between the old and the new group ids, and notifies them. Groups whose content
+    // has changed can't be found from their ids, so they still have to be notified with notifyGroupChanged()
+    public void notifyGroupIdsChanged(long[] oldGroupIds, long[] newGroupIds) {
+        final LongSparseBooleanArray newGroupIdSet = new LongSparseBooleanArray(newGroupIds.length);
+        for(int i = 0; i < newGroupIds.length; i++) {
+            newGroupIdSet.put(newGroupIds[i], true);
+        }
+
+        final long[] groupIds = new long[Math.max(oldGroupIds.length, newGroupIds.length)];
+        System.arraycopy(oldGroupIds, 0, groupIds, 0, oldGroupIds.length);
+        int groupCount = oldGroupIds.length;
+
+        // Removals go first, from the end, so the positions of the following ones are still valid. Consecutive groups are notified together
+        int i = groupCount - 1;
+        while(i >= 0) {
+            if(newGroupIdSet.get(groupIds[i], false)) {
+                i--;
+                continue;
+            }
+
+            final int to = i + 1;
+            while(i >= 0 && !newGroupIdSet.get(groupIds[i], false)) {
+                i--;
+            }
+            final int from = i + 1;
+            System.arraycopy(groupIds, to, groupIds, from, groupCount - to);
+            groupCount -= to - from;
+            notifyGroupRangeRemoved(from, to - from);
+        }
+
+        final LongSparseBooleanArray remainingGroupIdSet = new LongSparseBooleanArray(groupCount);
+        for(i = 0; i < groupCount; i++) {
+            remainingGroupIdSet.put(groupIds[i], true);
+        }
+
+        // Then the groups are moved or inserted in order, until the old groups match the new ones
+        for(i = 0; i < newGroupIds.length; i++) {
+            final long groupId = newGroupIds[i];
+            if(i < groupCount && groupIds[i] == groupId) {
+                continue;
+            }
+
+            if(remainingGroupIdSet.get(groupId, false)) {
+                int from = i + 1;
+                while(groupIds[from] != groupId) {
+                    from++;
+                }
+                System.arraycopy(groupIds, i, groupIds, i + 1, from - i);
+                groupIds[i] = groupId;
+                notifyGroupMoved(from, i);
+            } else {
+                System.arraycopy(groupIds, i, groupIds, i + 1, groupCount - i);
+                groupIds[i] = groupId;
+                groupCount++;
+                notifyGroupInserted(i);
+            }
+        }
+    }
+
+    // Updates the expanded state of the groups from fromGroupPosition (inclusive) to toGroupPosition (exclusive) in a single batch
+    void setGroupsExpanded(int fromGroupPosition, int toGroupPosition, boolean expanded) {
+        validateGroupState();
+        final boolean stableIds = mWrappedAdapter.hasStableIds();
+
+        for(int i = fromGroupPosition; i < toGroupPosition; i++) {
+            // Groups that were never expanded have no entry, so they're only collapsed once they were expanded
+            if(mGroupExpandedMap.get(i) == expanded) {
+                continue;
+            }
+
+            if(expanded) {
+                mGroupExpandedMap.put(i, true);
+            } else {
+                mGroupExpandedMap.delete(i);
+            }
+            if(stableIds) {
+                final long groupId = mWrappedAdapter.getGroupId(i);
+                if(expanded) {
+                    mGroupIdExpandedMap.put(groupId, true);
+                } else {
+                    mGroupIdExpandedMap.delete(groupId);
+                }
+            }
+
+            if(expanded) {
+                mWrappedAdapter.onGroupExpanded(i);
+            } else {
+                mWrappedAdapter.onGroupCollapsed(i);
+            }
+        }
+
+        // The position index is rebuilt once instead of being updated for each group
+        mGroupStateValid = false;
+    }
+
+    // Replaces the expanded state with the groups that the list has expanded, without calling the wrapped adapter. The list can expand groups
+    // without calling onGroupExpanded(), as when its instance state is restored, or when this adapter is set on another list
+    void syncGroupsExpanded(int[] expandedGroupPositions, int expandedGroupCount) {
+        final int groupCount = mWrappedAdapter.getGroupCount();
+        final boolean stableIds = mWrappedAdapter.hasStableIds();
+
+        mGroupExpandedMap.clear();
+        mGroupIdExpandedMap.clear();
+        for(int i = 0; i < expandedGroupCount; i++) {
+            final int groupPosition = expandedGroupPositions[i];
+            if(groupPosition < 0 || groupPosition >= groupCount) {
+                continue;
+            }
+
+            mGroupExpandedMap.put(groupPosition, true);
+            if(stableIds) {
+                mGroupIdExpandedMap.put(mWrappedAdapter.getGroupId(groupPosition), true);
+            }
+        }
+        mGroupStateValid = false;
+    }
+
+    // Called when the groups have changed, including the granular changes that don't notify the data set observers
+    void onGroupDataChanged() {
+    }
+
+    ExpandableListAdapter getWrappedAdapter() {
+        return mWrappedAdapter;
+    }
+
+    void setOnChangeListener(OnChangeListener listener) {
+        mOnChangeListener = listener;
+    }
+
+    // Flat positions here don't take the list header views into account
+    int getGroupFlatPosition(int groupPosition) {
+        validateGroupState();
+        return mGroupPositionIndex.getGroupFlatPosition(groupPosition);
+    }
+
+    int getGroupForFlatPosition(int flatPosition) {
+        validateGroupState();
+        return mGroupPositionIndex.getGroupForFlatPosition(flatPosition);
+    }
+
+    private void setGroupExpanded(int groupPosition, boolean expanded) {
+        validateGroupState();
+        if(mGroupExpandedMap.get(groupPosition) == expanded) {
+            return;
+        }
+
+        if(expanded) {
+            mGroupExpandedMap.put(groupPosition, true);
+        } else {
+            mGroupExpandedMap.delete(groupPosition);
+        }
+        if(mWrappedAdapter.hasStableIds()) {
+            final long groupId = mWrappedAdapter.getGroupId(groupPosition);
+            if(expanded) {
+                mGroupIdExpandedMap.put(groupId, true);
+            } else {
+                mGroupIdExpandedMap.delete(groupId);
+            }
+        }
+        mGroupPositionIndex.setVisibleChildrenCount(groupPosition, expanded ? mWrappedAdapter.getChildrenCount(groupPosition) : 0);
+    }
+
+    private void notifyGroupPositionsChanged(GroupPositionChange change) {
+        // The groups that were expanded stay expanded at their new positions. With stable ids, that is already done from the group ids
+        if(!mWrappedAdapter.hasStableIds() && mGroupExpandedMap.size() > 0) {
+            final int expandedGroupCount = mGroupExpandedMap.size();
+            final int[] groupPositions = new int[expandedGroupCount];
+            final boolean[] expanded = new boolean[expandedGroupCount];
+            for(int i = 0; i < expandedGroupCount; i++) {
+                groupPositions[i] = mGroupExpandedMap.keyAt(i);
+                expanded[i] = mGroupExpandedMap.valueAt(i);
+            }
+
+            mGroupExpandedMap.clear();
+            for(int i = 0; i < expandedGroupCount; i++) {
+                final int groupPosition = change.apply(groupPositions[i]);
+                if(groupPosition >= 0) {
+                    mGroupExpandedMap.put(groupPosition, expanded[i]);
+                }
+            }
+        }
+        mGroupStateValid = false;
+        onGroupDataChanged();
+
+        if(mOnChangeListener == null || !mOnChangeListener.onGroupPositionsChanged(change)) {
+            notifyWrappedDataSetChanged();
+        }
+    }
+
+    private void notifyChildrenStructureChanged(int groupPosition) {
+        validateGroupState();
+        if(mGroupExpandedMap.get(groupPosition)) {
+            mGroupPositionIndex.setVisibleChildrenCount(groupPosition, mWrappedAdapter.getChildrenCount(groupPosition));
+        }
+
+        if(mOnChangeListener == null || !mOnChangeListener.onChildrenStructureChanged(groupPosition)) {
+            notifyWrappedDataSetChanged();
+        }
+    }
+
+    // Without a list that handles the granular changes, the whole data set is notified as changed
+    private void notifyWrappedDataSetChanged() {
+        mGroupStateValid = false;
+        if(mWrappedAdapter instanceof BaseExpandableListAdapter) {
+            ((BaseExpandableListAdapter) mWrappedAdapter).notifyDataSetChanged();
+        }
+    }
+
+    // Reconciles the expanded state with the current groups and rebuilds the position index, all in a single pass
+    private void validateGroupState() {
+        if(mGroupStateValid) {
+            return;
+        }
+        mGroupStateValid = true;
+
+        final int groupCount = mWrappedAdapter.getGroupCount();
+        final boolean stableIds = mWrappedAdapter.hasStableIds();
+
+        if(mVisibleChildrenCounts.length < groupCount) {
+            mVisibleChildrenCounts = new int[groupCount];
+        }
+
+        int expandedGroupIdCount = 0;
+        if(stableIds) {
+            mGroupExpandedMap.clear();
+            if(mExpandedGroupIds.length < mGroupIdExpandedMap.size()) {
+                mExpandedGroupIds = new long[mGroupIdExpandedMap.size()];
+            }
+        }
+
+        for(int i = 0; i < groupCount; i++) {
+            final boolean expanded;
+            if(stableIds) {
+                final long groupId = mWrappedAdapter.getGroupId(i);
+                expanded = mGroupIdExpandedMap.get(groupId, false);
+                if(expanded) {
+                    mGroupExpandedMap.append(i, true);
+                    // Guards against adapters that report the same id for more than one group
+                    if(expandedGroupIdCount < mExpandedGroupIds.length) {
+                        mExpandedGroupIds[expandedGroupIdCount++] = groupId;
+                    }
+                }
+            } else {
+                expanded = mGroupExpandedMap.get(i);
+            }
+            mVisibleChildrenCounts[i] = expanded ? mWrappedAdapter.getChildrenCount(i) : 0;
+        }
+
+        // Ids of groups that don't exist anymore are dropped
+        if(stableIds) {
+            Arrays.sort(mExpandedGroupIds, 0, expandedGroupIdCount);
+            mGroupIdExpandedMap.clear();
+            for(int i = 0; i < expandedGroupIdCount; i++) {
+                mGroupIdExpandedMap.append(mExpandedGroupIds[i], true);
+            }
+        }
+
+        mGroupPositionIndex.build(mVisibleChildrenCounts, groupCount);
+    }
+
+    // Can be implemented by the wrapped adapter to update the views that are shown from the payload of a change, without binding them again.
+    // Each method returns whether the payload could be bound, otherwise the view is bound again through getGroupView() or getChildView()
+    public interface PayloadBinder {
+        public boolean onBindGroupPayload(int groupPosition, boolean isExpanded, View groupView, Object payload);
+        public boolean onBindChildPayload(int groupPosition, int childPosition, boolean isLastChild, View childView, Object payload);
+    }
+
+    // Each method returns whether the change was handled, otherwise the whole data set is notified as changed
+    interface OnChangeListener {
+        boolean onGroupPositionsChanged(GroupPositionChange change);
+        boolean onChildrenStructureChanged(int groupPosition);
+        boolean onGroupsChanged(int fromGroupPosition, int groupCount, Object payload);
+        boolean onChildrenChanged(int groupPosition, int fromChildPosition, int childCount, Object payload);
     }
 }
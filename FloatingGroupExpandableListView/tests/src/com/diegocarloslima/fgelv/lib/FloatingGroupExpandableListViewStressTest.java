@@ -0,0 +1,289 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.Locale;
+import java.util.Random;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
+import android.widget.BaseExpandableListAdapter;
+import android.widget.TextView;
+
+// Scrolls, flings and expand and collapse storms over synthetic adapters from 10 groups of 10 children up to 50,000 groups of 100 children.
+// Each scenario logs its wall time, allocations, adapter binds and floating group metrics under TAG, so they can be compared between builds,
+// and fails when the binds grow with the adapter size or reflective lookups are done after the warm-up. Each frame is laid out and drawn
+// into a bitmap, so createFloatingGroupView() and dispatchDraw() run as they would on screen. A detached list can't run its fling
+// animation, so a fling reports the fling scroll state and then scrolls one frame at a time. They're @LargeTest, so they can be run alone
+// with -e size large
+@LargeTest
+public class FloatingGroupExpandableListViewStressTest extends InstrumentationTestCase {
+
+	private static final String TAG = FloatingGroupExpandableListViewStressTest.class.getSimpleName();
+
+	private static final int WIDTH = 480;
+	private static final int HEIGHT = 800;
+	private static final int ROW_HEIGHT = 40;
+	private static final int VISIBLE_ROW_COUNT = HEIGHT / ROW_HEIGHT + 1;
+
+	// Group count and children count of each adapter
+	private static final int[][] SIZES = {{10, 10}, {1000, 100}, {50000, 100}};
+
+	private static final int FRAME_COUNT = 600;
+	private static final int SCROLL_STEP = ROW_HEIGHT / 3;
+	private static final int FLING_STEP = 3 * ROW_HEIGHT / 2;
+	private static final int JUMP_COUNT = 200;
+	private static final int TOGGLE_COUNT = 200;
+
+	private FloatingGroupExpandableListView mList;
+	private SyntheticAdapter mAdapter;
+	private FloatingGroupMetrics mMetrics;
+	private final Canvas mCanvas = new Canvas();
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mCanvas.setBitmap(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+	}
+
+	@UiThreadTest
+	public void testScroll() {
+		for(int[] size : SIZES) {
+			setUpList(size[0], size[1]);
+			final int lookupCount = ReflectionUtils.getLookupCount();
+
+			final Stats stats = new Stats();
+			for(int i = 1; i <= FRAME_COUNT; i++) {
+				scrollTo(i * SCROLL_STEP);
+			}
+			stats.finish("scroll", FRAME_COUNT);
+
+			assertEquals(lookupCount, ReflectionUtils.getLookupCount());
+			assertTrue(stats.getBindCount() <= 2 * VISIBLE_ROW_COUNT + FRAME_COUNT * (SCROLL_STEP / ROW_HEIGHT + 2));
+		}
+	}
+
+	@UiThreadTest
+	public void testJumpScroll() {
+		for(int[] size : SIZES) {
+			setUpList(size[0], size[1]);
+			final int flatCount = size[0] * (1 + size[1]);
+
+			final Stats stats = new Stats();
+			for(int i = 1; i <= JUMP_COUNT; i++) {
+				scrollTo((int) ((long) flatCount * i / (JUMP_COUNT + 1)) * ROW_HEIGHT);
+			}
+			stats.finish("jump scroll", JUMP_COUNT);
+
+			assertTrue(stats.getBindCount() <= (JUMP_COUNT + 1) * (VISIBLE_ROW_COUNT + 2));
+		}
+	}
+
+	@UiThreadTest
+	public void testFling() {
+		for(int[] size : SIZES) {
+			setUpList(size[0], size[1]);
+			mList.setFloatingGroupSnapshotEnabled(true);
+			final OnScrollListener scrollListener = (OnScrollListener) ReflectionUtils.getFieldValue(AbsListView.class, "mOnScrollListener", mList);
+			final int lookupCount = ReflectionUtils.getLookupCount();
+
+			final Stats stats = new Stats();
+			scrollListener.onScrollStateChanged(mList, OnScrollListener.SCROLL_STATE_FLING);
+			for(int i = 1; i <= FRAME_COUNT; i++) {
+				scrollTo(i * FLING_STEP);
+			}
+			scrollListener.onScrollStateChanged(mList, OnScrollListener.SCROLL_STATE_IDLE);
+			frame();
+			stats.finish("fling", FRAME_COUNT + 1);
+
+			assertEquals(lookupCount, ReflectionUtils.getLookupCount());
+			assertTrue(stats.getBindCount() <= 2 * VISIBLE_ROW_COUNT + FRAME_COUNT * (FLING_STEP / ROW_HEIGHT + 2));
+		}
+	}
+
+	@UiThreadTest
+	public void testExpandCollapseStorm() {
+		for(int[] size : SIZES) {
+			setUpList(size[0], size[1]);
+			// Halfway through the list, so the groups toggled are above, at and below the floating group
+			final int firstGroupPosition = size[0] / 2;
+			mList.setSelectedGroup(firstGroupPosition);
+			frame();
+
+			final Random random = new Random(0);
+			final Stats stats = new Stats();
+			for(int i = 0; i < TOGGLE_COUNT; i++) {
+				final int groupPosition = Math.min(firstGroupPosition + random.nextInt(4) - 1, size[0] - 1);
+				if(mList.isGroupExpanded(groupPosition)) {
+					mList.collapseGroup(groupPosition);
+				} else {
+					mList.expandGroup(groupPosition);
+				}
+				frame();
+			}
+			stats.finish("expand and collapse", TOGGLE_COUNT);
+
+			assertTrue(stats.getBindCount() <= (TOGGLE_COUNT + 1) * 2 * (VISIBLE_ROW_COUNT + 2));
+
+			final Stats allStats = new Stats();
+			mList.collapseAllGroups();
+			frame();
+			mList.expandAllGroups();
+			frame();
+			allStats.finish("collapse and expand all", 2);
+		}
+	}
+
+	private void setUpList(int groupCount, int childrenCount) {
+		final Context context = getInstrumentation().getTargetContext();
+		mAdapter = new SyntheticAdapter(context, groupCount, childrenCount);
+		mMetrics = new FloatingGroupMetrics();
+		mList = new FloatingGroupExpandableListView(context);
+		mList.setAdapter(new WrapperExpandableListAdapter(mAdapter));
+		mList.setFloatingGroupMetrics(mMetrics);
+		mList.expandAllGroups();
+
+		// Warms up the reflective lookups and the recycled views
+		frame();
+		scrollTo(VISIBLE_ROW_COUNT * ROW_HEIGHT + ROW_HEIGHT / 2);
+		scrollTo(0);
+	}
+
+	// Every row has the same height, so the list is scrolled to y by selecting the row at y
+	private void scrollTo(int y) {
+		mList.setSelectionFromTop(y / ROW_HEIGHT, -(y % ROW_HEIGHT));
+		frame();
+	}
+
+	private void frame() {
+		mList.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+		mList.layout(0, 0, WIDTH, HEIGHT);
+		mList.draw(mCanvas);
+	}
+
+	private class Stats {
+
+		private final int mGroupBindCount;
+		private final int mChildBindCount;
+		private final long mStartTime;
+		private int mBindCount;
+
+		Stats() {
+			mMetrics.reset();
+			mGroupBindCount = mAdapter.groupBindCount;
+			mChildBindCount = mAdapter.childBindCount;
+			Debug.startAllocCounting();
+			Debug.resetThreadAllocCount();
+			mStartTime = System.nanoTime();
+		}
+
+		void finish(String scenario, int frameCount) {
+			final long time = System.nanoTime() - mStartTime;
+			final int allocCount = Debug.getThreadAllocCount();
+			Debug.stopAllocCounting();
+
+			final int groupBindCount = mAdapter.groupBindCount - mGroupBindCount;
+			final int childBindCount = mAdapter.childBindCount - mChildBindCount;
+			mBindCount = groupBindCount + childBindCount;
+
+			final FloatingGroupMetrics.Histogram createTimes = mMetrics.getCreateFloatingGroupViewTimes();
+			final FloatingGroupMetrics.Histogram drawTimes = mMetrics.getDispatchDrawTimes();
+			Log.i(TAG, String.format(Locale.US, "%s, %d groups x %d children: %d frames in %.1f ms, %d allocations, %d group binds, %d child binds, "
+					+ "%d floating group rebinds, createFloatingGroupView %d us avg %d us max, dispatchDraw %d us avg %d us max",
+					scenario, mAdapter.getGroupCount(), mAdapter.childrenCount, frameCount, time / 1e6, allocCount, groupBindCount, childBindCount,
+					mMetrics.getRebindCount(), createTimes.getAverageNanos() / 1000, createTimes.getMaxNanos() / 1000,
+					drawTimes.getAverageNanos() / 1000, drawTimes.getMaxNanos() / 1000));
+		}
+
+		int getBindCount() {
+			return mBindCount;
+		}
+	}
+
+	private static class SyntheticAdapter extends BaseExpandableListAdapter {
+
+		final int childrenCount;
+		int groupBindCount;
+		int childBindCount;
+
+		private final Context mContext;
+		private final int mGroupCount;
+
+		SyntheticAdapter(Context context, int groupCount, int childrenCount) {
+			mContext = context;
+			mGroupCount = groupCount;
+			this.childrenCount = childrenCount;
+		}
+
+		@Override
+		public int getGroupCount() {
+			return mGroupCount;
+		}
+
+		@Override
+		public int getChildrenCount(int groupPosition) {
+			return childrenCount;
+		}
+
+		@Override
+		public Object getGroup(int groupPosition) {
+			return null;
+		}
+
+		@Override
+		public Object getChild(int groupPosition, int childPosition) {
+			return null;
+		}
+
+		@Override
+		public long getGroupId(int groupPosition) {
+			return groupPosition;
+		}
+
+		@Override
+		public long getChildId(int groupPosition, int childPosition) {
+			return childPosition;
+		}
+
+		@Override
+		public boolean hasStableIds() {
+			return true;
+		}
+
+		@Override
+		public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+			groupBindCount++;
+			return bindRow(convertView);
+		}
+
+		@Override
+		public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+			childBindCount++;
+			return bindRow(convertView);
+		}
+
+		@Override
+		public boolean isChildSelectable(int groupPosition, int childPosition) {
+			return true;
+		}
+
+		private View bindRow(View convertView) {
+			TextView view = (TextView) convertView;
+			if(view == null) {
+				view = new TextView(mContext);
+				view.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+			}
+			// The rows are left empty, so the allocations counted are the list's own
+			return view;
+		}
+	}
+}
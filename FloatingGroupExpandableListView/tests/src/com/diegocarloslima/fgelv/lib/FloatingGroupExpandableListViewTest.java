@@ -0,0 +1,176 @@
+package com.diegocarloslima.fgelv.lib;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseExpandableListAdapter;
+import android.widget.TextView;
+
+public class FloatingGroupExpandableListViewTest extends InstrumentationTestCase {
+
+	private static final int WIDTH = 480;
+	private static final int HEIGHT = 800;
+	private static final int ROW_HEIGHT = 40;
+	private static final int GROUP_COUNT = 20;
+
+	private FloatingGroupExpandableListView mList;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		getInstrumentation().runOnMainSync(new Runnable() {
+
+			@Override
+			public void run() {
+				mList = new FloatingGroupExpandableListView(getInstrumentation().getTargetContext());
+				mList.setAdapter(new WrapperExpandableListAdapter(new TestAdapter(getInstrumentation().getTargetContext())));
+				for(int i = 0; i < GROUP_COUNT; i++) {
+					mList.expandGroup(i);
+				}
+				layout();
+			}
+		});
+	}
+
+	@UiThreadTest
+	public void testNoReflectiveLookupsWhileScrollingAfterWarmUp() {
+		scrollThroughGroups();
+
+		final int lookupCount = ReflectionUtils.getLookupCount();
+		scrollThroughGroups();
+		scrollThroughGroups();
+		assertEquals(lookupCount, ReflectionUtils.getLookupCount());
+	}
+
+	@UiThreadTest
+	public void testFloatingGroupFollowsScroll() {
+		// The first child of the third group is at the top, so its group floats
+		mList.setSelectionFromTop(2 * (1 + TestAdapter.CHILDREN_COUNT) + 1, 0);
+		layout();
+		assertEquals(2, mList.getFloatingGroupPosition());
+	}
+
+	@UiThreadTest
+	public void testTouchingFloatingGroupDoesNotAllocate() {
+		mList.setSelectionFromTop(1, 0);
+		layout();
+		assertEquals(0, mList.getFloatingGroupPosition());
+
+		final long downTime = SystemClock.uptimeMillis();
+		final MotionEvent down = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN, 10, ROW_HEIGHT / 2, 0);
+		final MotionEvent move = MotionEvent.obtain(downTime, downTime + 10, MotionEvent.ACTION_MOVE, 11, ROW_HEIGHT / 2, 0);
+		final MotionEvent cancel = MotionEvent.obtain(downTime, downTime + 20, MotionEvent.ACTION_CANCEL, 11, ROW_HEIGHT / 2, 0);
+
+		// The first events allocate what the list and the floating group view reuse afterwards
+		mList.dispatchTouchEvent(down);
+		mList.dispatchTouchEvent(move);
+
+		Debug.startAllocCounting();
+		Debug.resetThreadAllocCount();
+		for(int i = 0; i < 100; i++) {
+			mList.dispatchTouchEvent(move);
+		}
+		final int allocCount = Debug.getThreadAllocCount();
+		Debug.stopAllocCounting();
+
+		mList.dispatchTouchEvent(cancel);
+		down.recycle();
+		move.recycle();
+		cancel.recycle();
+
+		assertEquals(0, allocCount);
+	}
+
+	private void scrollThroughGroups() {
+		final int flatCount = GROUP_COUNT * (1 + TestAdapter.CHILDREN_COUNT);
+		for(int position = 1; position < flatCount; position += 3) {
+			mList.setSelectionFromTop(position, -ROW_HEIGHT / 2);
+			layout();
+		}
+		mList.setSelectionFromTop(0, 0);
+		layout();
+	}
+
+	private void layout() {
+		mList.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY), MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+		mList.layout(0, 0, WIDTH, HEIGHT);
+	}
+
+	private static class TestAdapter extends BaseExpandableListAdapter {
+
+		static final int CHILDREN_COUNT = 5;
+
+		private final Context mContext;
+
+		TestAdapter(Context context) {
+			mContext = context;
+		}
+
+		@Override
+		public int getGroupCount() {
+			return GROUP_COUNT;
+		}
+
+		@Override
+		public int getChildrenCount(int groupPosition) {
+			return CHILDREN_COUNT;
+		}
+
+		@Override
+		public Object getGroup(int groupPosition) {
+			return "Group " + groupPosition;
+		}
+
+		@Override
+		public Object getChild(int groupPosition, int childPosition) {
+			return "Child " + childPosition;
+		}
+
+		@Override
+		public long getGroupId(int groupPosition) {
+			return groupPosition;
+		}
+
+		@Override
+		public long getChildId(int groupPosition, int childPosition) {
+			return childPosition;
+		}
+
+		@Override
+		public boolean hasStableIds() {
+			return true;
+		}
+
+		@Override
+		public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+			return bindRow(convertView, getGroup(groupPosition));
+		}
+
+		@Override
+		public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+			return bindRow(convertView, getChild(groupPosition, childPosition));
+		}
+
+		@Override
+		public boolean isChildSelectable(int groupPosition, int childPosition) {
+			return true;
+		}
+
+		private View bindRow(View convertView, Object text) {
+			TextView view = (TextView) convertView;
+			if(view == null) {
+				view = new TextView(mContext);
+				view.setLayoutParams(new AbsListView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ROW_HEIGHT));
+			}
+			view.setText(text.toString());
+			return view;
+		}
+	}
+}
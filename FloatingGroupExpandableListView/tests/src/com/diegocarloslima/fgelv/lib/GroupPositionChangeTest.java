@@ -0,0 +1,70 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class GroupPositionChangeTest extends TestCase {
+
+	public void testInserted() {
+		final GroupPositionChange change = GroupPositionChange.inserted(2, 3);
+		assertEquals(1, change.apply(1));
+		assertEquals(5, change.apply(2));
+		assertEquals(7, change.apply(4));
+	}
+
+	public void testRemoved() {
+		final GroupPositionChange change = GroupPositionChange.removed(2, 3);
+		assertEquals(1, change.apply(1));
+		assertEquals(-1, change.apply(2));
+		assertEquals(-1, change.apply(4));
+		assertEquals(2, change.apply(5));
+	}
+
+	public void testInvalidPositionIsKept() {
+		assertEquals(-1, GroupPositionChange.inserted(0, 1).apply(-1));
+		assertEquals(-1, GroupPositionChange.moved(0, 1).apply(-1));
+	}
+
+	// Each change must map every group to where the same change on a list puts it
+	public void testRandomChangesMatchList() {
+		final Random random = new Random(0);
+
+		for(int round = 0; round < 500; round++) {
+			final int groupCount = 1 + random.nextInt(20);
+			final ArrayList<Integer> groups = new ArrayList<Integer>();
+			for(int i = 0; i < groupCount; i++) {
+				groups.add(i);
+			}
+
+			final GroupPositionChange change;
+			final int from = random.nextInt(groupCount);
+			switch(random.nextInt(3)) {
+			case 0:
+				final int insertedCount = 1 + random.nextInt(3);
+				change = GroupPositionChange.inserted(from, insertedCount);
+				for(int i = 0; i < insertedCount; i++) {
+					groups.add(from, -1);
+				}
+				break;
+			case 1:
+				final int removedCount = 1 + random.nextInt(groupCount - from);
+				change = GroupPositionChange.removed(from, removedCount);
+				for(int i = 0; i < removedCount; i++) {
+					groups.remove(from);
+				}
+				break;
+			default:
+				final int to = random.nextInt(groupCount);
+				change = GroupPositionChange.moved(from, to);
+				groups.add(to, groups.remove(from));
+				break;
+			}
+
+			for(int i = 0; i < groupCount; i++) {
+				assertEquals(groups.indexOf(i), change.apply(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class GroupPositionIndexTest extends TestCase {
+
+	public void testEmpty() {
+		final GroupPositionIndex index = new GroupPositionIndex();
+		index.build(new int[0], 0);
+
+		assertEquals(0, index.getFlatCount());
+		assertEquals(0, index.getGroupFlatPosition(0));
+		assertEquals(-1, index.getGroupForFlatPosition(0));
+	}
+
+	public void testFlatPositions() {
+		final GroupPositionIndex index = new GroupPositionIndex();
+		index.build(new int[]{0, 2, 0, 3}, 4);
+
+		assertEquals(0, index.getGroupFlatPosition(0));
+		assertEquals(1, index.getGroupFlatPosition(1));
+		assertEquals(4, index.getGroupFlatPosition(2));
+		assertEquals(5, index.getGroupFlatPosition(3));
+		assertEquals(9, index.getFlatCount());
+		assertEquals(9, index.getGroupFlatPosition(4));
+
+		assertEquals(-1, index.getGroupForFlatPosition(-1));
+		assertEquals(0, index.getGroupForFlatPosition(0));
+		assertEquals(1, index.getGroupForFlatPosition(1));
+		assertEquals(1, index.getGroupForFlatPosition(3));
+		assertEquals(2, index.getGroupForFlatPosition(4));
+		assertEquals(3, index.getGroupForFlatPosition(8));
+		assertEquals(-1, index.getGroupForFlatPosition(9));
+	}
+
+	public void testRandomUpdatesMatchPrefixSums() {
+		final Random random = new Random(0);
+		final GroupPositionIndex index = new GroupPositionIndex();
+
+		for(int round = 0; round < 20; round++) {
+			final int groupCount = random.nextInt(200);
+			final int[] visibleChildrenCounts = new int[groupCount];
+			for(int i = 0; i < groupCount; i++) {
+				visibleChildrenCounts[i] = random.nextInt(3) == 0 ? random.nextInt(10) : 0;
+			}
+			// Built over a larger array, as the wrapper reuses its array when the groups shrink
+			final int[] buildCounts = new int[groupCount + random.nextInt(5)];
+			System.arraycopy(visibleChildrenCounts, 0, buildCounts, 0, groupCount);
+			index.build(buildCounts, groupCount);
+			assertMatches(index, visibleChildrenCounts);
+
+			for(int update = 0; update < 50 && groupCount > 0; update++) {
+				final int groupPosition = random.nextInt(groupCount);
+				visibleChildrenCounts[groupPosition] = random.nextInt(10);
+				index.setVisibleChildrenCount(groupPosition, visibleChildrenCounts[groupPosition]);
+			}
+			assertMatches(index, visibleChildrenCounts);
+		}
+	}
+
+	private static void assertMatches(GroupPositionIndex index, int[] visibleChildrenCounts) {
+		final int groupCount = visibleChildrenCounts.length;
+		assertEquals(groupCount, index.getGroupCount());
+
+		int flatPosition = 0;
+		for(int i = 0; i < groupCount; i++) {
+			assertEquals(visibleChildrenCounts[i], index.getVisibleChildrenCount(i));
+			assertEquals(flatPosition, index.getGroupFlatPosition(i));
+			for(int j = 0; j <= visibleChildrenCounts[i]; j++) {
+				assertEquals(i, index.getGroupForFlatPosition(flatPosition + j));
+			}
+			flatPosition += 1 + visibleChildrenCounts[i];
+		}
+		assertEquals(flatPosition, index.getFlatCount());
+		assertEquals(-1, index.getGroupForFlatPosition(flatPosition));
+	}
+}
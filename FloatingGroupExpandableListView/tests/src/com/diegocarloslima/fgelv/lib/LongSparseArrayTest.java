@@ -0,0 +1,68 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class LongSparseArrayTest extends TestCase {
+
+	public void testGetPutDelete() {
+		final LongSparseArray<String> array = new LongSparseArray<String>(1);
+		assertNull(array.get(5));
+
+		array.put(5, "5");
+		array.put(Long.MIN_VALUE, "min");
+		array.put(Long.MAX_VALUE, "max");
+		assertEquals(3, array.size());
+		assertEquals("5", array.get(5));
+		assertEquals("min", array.get(Long.MIN_VALUE));
+		assertEquals("max", array.get(Long.MAX_VALUE));
+
+		array.delete(5);
+		array.delete(6);
+		assertEquals(2, array.size());
+		assertNull(array.get(5));
+
+		array.setValueAt(1, "other");
+		assertEquals("other", array.get(Long.MAX_VALUE));
+		array.removeAt(0);
+		assertEquals(1, array.size());
+		assertEquals(Long.MAX_VALUE, array.keyAt(0));
+
+		array.clear();
+		assertEquals(0, array.size());
+	}
+
+	public void testRandomOperationsMatchTreeMap() {
+		final Random random = new Random(0);
+		final LongSparseArray<Integer> array = new LongSparseArray<Integer>(0);
+		final TreeMap<Long, Integer> expected = new TreeMap<Long, Integer>();
+
+		for(int i = 0; i < 5000; i++) {
+			final long key = random.nextInt(300) - 150;
+			switch(random.nextInt(3)) {
+			case 0:
+				array.put(key, i);
+				expected.put(key, i);
+				break;
+			case 1:
+				array.delete(key);
+				expected.remove(key);
+				break;
+			default:
+				assertEquals(expected.get(key), array.get(key));
+				break;
+			}
+		}
+
+		assertEquals(expected.size(), array.size());
+		int index = 0;
+		for(Map.Entry<Long, Integer> entry : expected.entrySet()) {
+			assertEquals(entry.getKey().longValue(), array.keyAt(index));
+			assertEquals(entry.getValue(), array.valueAt(index));
+			index++;
+		}
+	}
+}
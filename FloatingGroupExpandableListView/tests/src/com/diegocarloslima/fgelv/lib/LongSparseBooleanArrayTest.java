@@ -0,0 +1,79 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+public class LongSparseBooleanArrayTest extends TestCase {
+
+	public void testGetPutDelete() {
+		final LongSparseBooleanArray array = new LongSparseBooleanArray(1);
+		assertFalse(array.get(5, false));
+		assertTrue(array.get(5, true));
+
+		array.put(5, true);
+		array.put(Long.MIN_VALUE, false);
+		array.put(Long.MAX_VALUE, true);
+		assertEquals(3, array.size());
+		assertTrue(array.get(5, false));
+		assertFalse(array.get(Long.MIN_VALUE, true));
+		assertTrue(array.get(Long.MAX_VALUE, false));
+
+		array.delete(5);
+		array.delete(6);
+		assertEquals(2, array.size());
+		assertFalse(array.get(5, false));
+
+		array.clear();
+		assertEquals(0, array.size());
+	}
+
+	public void testAppendOutOfOrderKeepsKeysSorted() {
+		final LongSparseBooleanArray array = new LongSparseBooleanArray();
+		array.append(10, true);
+		array.append(20, true);
+		array.append(15, false);
+		array.append(20, false);
+
+		assertEquals(3, array.size());
+		assertEquals(10, array.keyAt(0));
+		assertEquals(15, array.keyAt(1));
+		assertEquals(20, array.keyAt(2));
+		assertFalse(array.valueAt(2));
+	}
+
+	public void testRandomOperationsMatchTreeMap() {
+		final Random random = new Random(0);
+		final LongSparseBooleanArray array = new LongSparseBooleanArray(0);
+		final TreeMap<Long, Boolean> expected = new TreeMap<Long, Boolean>();
+
+		for(int i = 0; i < 5000; i++) {
+			final long key = random.nextInt(300) - 150;
+			switch(random.nextInt(3)) {
+			case 0:
+				final boolean value = random.nextBoolean();
+				array.put(key, value);
+				expected.put(key, value);
+				break;
+			case 1:
+				array.delete(key);
+				expected.remove(key);
+				break;
+			default:
+				final Boolean expectedValue = expected.get(key);
+				assertEquals(expectedValue != null && expectedValue, array.get(key, false));
+				break;
+			}
+		}
+
+		assertEquals(expected.size(), array.size());
+		int index = 0;
+		for(Map.Entry<Long, Boolean> entry : expected.entrySet()) {
+			assertEquals(entry.getKey().longValue(), array.keyAt(index));
+			assertEquals(entry.getValue().booleanValue(), array.valueAt(index));
+			index++;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.diegocarloslima.fgelv.lib;
+
+import junit.framework.TestCase;
+
+public class ReflectionUtilsTest extends TestCase {
+
+	public void testNoLookupsAfterWarmUp() {
+		final Target target = new Target();
+		accessTarget(target);
+
+		final int lookupCount = ReflectionUtils.getLookupCount();
+		final int reflectiveCallCount = ReflectionUtils.getReflectiveCallCount();
+		for(int i = 0; i < 100; i++) {
+			accessTarget(target);
+		}
+
+		assertEquals(lookupCount, ReflectionUtils.getLookupCount());
+		assertEquals(reflectiveCallCount + 100 * 4, ReflectionUtils.getReflectiveCallCount());
+		assertEquals(100 + 1, target.mValue);
+	}
+
+	public void testSameMembersAreReturned() {
+		assertSame(ReflectionUtils.getField(Target.class, "mValue"), ReflectionUtils.getField(Target.class, "mValue"));
+		assertSame(ReflectionUtils.getMethod(Target.class, "add", int.class), ReflectionUtils.getMethod(Target.class, "add", int.class));
+		assertSame(Target.class, ReflectionUtils.findClass(Target.class.getName()));
+	}
+
+	public void testOverloadsAreCachedSeparately() {
+		final Target target = new Target();
+		assertEquals(1, ReflectionUtils.invokeMethod(Target.class, "add", new Class<?>[]{int.class}, target, 1));
+		assertEquals(3, ReflectionUtils.invokeMethod(Target.class, "add", new Class<?>[]{int.class, int.class}, target, 1, 1));
+		assertNotSame(ReflectionUtils.getMethod(Target.class, "add", int.class), ReflectionUtils.getMethod(Target.class, "add", int.class, int.class));
+	}
+
+	public void testFailedLookupsAreCached() {
+		assertNull(ReflectionUtils.getField(Target.class, "mMissing"));
+		assertNull(ReflectionUtils.getMethod(Target.class, "missing"));
+		assertNull(ReflectionUtils.findClass("com.diegocarloslima.fgelv.lib.Missing"));
+
+		final int lookupCount = ReflectionUtils.getLookupCount();
+		assertNull(ReflectionUtils.getField(Target.class, "mMissing"));
+		assertNull(ReflectionUtils.getMethod(Target.class, "missing"));
+		assertNull(ReflectionUtils.findClass("com.diegocarloslima.fgelv.lib.Missing"));
+		assertEquals(-1, ReflectionUtils.getInt(Target.class, "mMissing", new Target(), -1));
+		assertEquals(lookupCount, ReflectionUtils.getLookupCount());
+	}
+
+	private static void accessTarget(Target target) {
+		ReflectionUtils.findClass(Target.class.getName());
+		ReflectionUtils.setInt(Target.class, "mValue", target, ReflectionUtils.getInt(Target.class, "mValue", target, -1));
+		ReflectionUtils.invokeMethod(Target.class, "add", new Class<?>[]{int.class}, target, 1);
+		ReflectionUtils.getFieldValue(Target.class, "mValue", target);
+	}
+
+	private static class Target {
+
+		private int mValue;
+
+		@SuppressWarnings("unused")
+		private int add(int value) {
+			mValue += value;
+			return mValue;
+		}
+
+		@SuppressWarnings("unused")
+		private int add(int value, int other) {
+			mValue += value + other;
+			return mValue;
+		}
+	}
+}
@@ -0,0 +1,306 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseExpandableListAdapter;
+
+import junit.framework.TestCase;
+
+public class WrapperExpandableListAdapterTest extends TestCase {
+
+	public void testCollapsingOnlyNotifiesExpandedGroups() {
+		final TestAdapter adapter = new TestAdapter(ids(0, 10), true);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+
+		wrapper.setGroupsExpanded(0, 10, false);
+		assertEquals(0, adapter.collapsedCount);
+
+		wrapper.setGroupsExpanded(2, 5, true);
+		assertEquals(3, adapter.expandedCount);
+		wrapper.setGroupsExpanded(0, 10, false);
+		assertEquals(3, adapter.collapsedCount);
+		for(int i = 0; i < 10; i++) {
+			assertFalse(wrapper.isGroupExpanded(i));
+		}
+	}
+
+	public void testFlatPositions() {
+		final TestAdapter adapter = new TestAdapter(ids(0, 4), false);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+
+		wrapper.onGroupExpanded(1);
+		assertEquals(1, wrapper.getGroupFlatPosition(1));
+		assertEquals(2 + TestAdapter.CHILDREN_COUNT, wrapper.getGroupFlatPosition(2));
+		assertEquals(1, wrapper.getGroupForFlatPosition(1 + TestAdapter.CHILDREN_COUNT));
+		assertEquals(2, wrapper.getGroupForFlatPosition(2 + TestAdapter.CHILDREN_COUNT));
+
+		wrapper.onGroupCollapsed(1);
+		assertEquals(2, wrapper.getGroupFlatPosition(2));
+	}
+
+	public void testSyncGroupsExpandedDoesNotNotify() {
+		final TestAdapter adapter = new TestAdapter(ids(0, 5), true);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+		wrapper.onGroupExpanded(0);
+
+		wrapper.syncGroupsExpanded(new int[]{1, 3, 7}, 3);
+		assertFalse(wrapper.isGroupExpanded(0));
+		assertTrue(wrapper.isGroupExpanded(1));
+		assertTrue(wrapper.isGroupExpanded(3));
+		assertEquals(1, adapter.expandedCount);
+		assertEquals(0, adapter.collapsedCount);
+		assertEquals(2 + TestAdapter.CHILDREN_COUNT, wrapper.getGroupFlatPosition(2));
+	}
+
+	public void testExpandedStateFollowsPositionsWithoutStableIds() {
+		final TestAdapter adapter = new TestAdapter(ids(0, 3), false);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+		wrapper.onGroupExpanded(1);
+
+		adapter.groupIds = new long[]{10, 0, 1, 2};
+		wrapper.notifyGroupInserted(0);
+		assertFalse(wrapper.isGroupExpanded(1));
+		assertTrue(wrapper.isGroupExpanded(2));
+
+		adapter.groupIds = new long[]{10, 0, 2};
+		wrapper.notifyGroupRemoved(2);
+		assertFalse(wrapper.isGroupExpanded(2));
+	}
+
+	public void testExpandedStateFollowsGroupIdsOnDataSetChanged() {
+		final TestAdapter adapter = new TestAdapter(new long[]{1, 2, 3, 4}, true);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+		wrapper.onGroupExpanded(2);
+
+		adapter.groupIds = new long[]{3, 4, 1};
+		adapter.notifyDataSetChanged();
+		assertTrue(wrapper.isGroupExpanded(0));
+		assertFalse(wrapper.isGroupExpanded(2));
+		assertEquals(1 + 1 + TestAdapter.CHILDREN_COUNT, wrapper.getGroupFlatPosition(2));
+
+		// The ids of the removed groups are dropped once the state is read again, as the list does on each layout, so a group added
+		// back later isn't expanded
+		adapter.groupIds = new long[]{4, 1};
+		adapter.notifyDataSetChanged();
+		assertFalse(wrapper.isGroupExpanded(0));
+		adapter.groupIds = new long[]{4, 1, 3};
+		adapter.notifyDataSetChanged();
+		assertFalse(wrapper.isGroupExpanded(2));
+	}
+
+	public void testExpandedStateFollowsGroupIds() {
+		final TestAdapter adapter = new TestAdapter(new long[]{1, 2, 3, 4}, true);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+		wrapper.onGroupExpanded(2);
+
+		final long[] oldGroupIds = adapter.groupIds;
+		adapter.groupIds = new long[]{3, 5, 1, 4};
+		wrapper.notifyGroupIdsChanged(oldGroupIds, adapter.groupIds);
+		assertTrue(wrapper.isGroupExpanded(0));
+		assertFalse(wrapper.isGroupExpanded(2));
+	}
+
+	// Replaying the notified changes on the old group ids must give the new ones, with the inserted groups where the new ids are
+	public void testRandomGroupIdChangesMatchNewIds() {
+		final Random random = new Random(0);
+
+		for(int round = 0; round < 300; round++) {
+			final long[] oldGroupIds = randomIds(random);
+			final long[] newGroupIds = randomIds(random);
+			final TestAdapter adapter = new TestAdapter(newGroupIds, true);
+			final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+
+			final ArrayList<Long> groupIds = new ArrayList<Long>();
+			for(int i = 0; i < oldGroupIds.length; i++) {
+				groupIds.add(oldGroupIds[i]);
+			}
+			wrapper.setOnChangeListener(new ReplayingListener(groupIds));
+			wrapper.notifyGroupIdsChanged(oldGroupIds, newGroupIds);
+
+			assertEquals(newGroupIds.length, groupIds.size());
+			for(int i = 0; i < newGroupIds.length; i++) {
+				final long groupId = groupIds.get(i);
+				if(groupId == ReplayingListener.INSERTED) {
+					assertFalse(contains(oldGroupIds, newGroupIds[i]));
+				} else {
+					assertEquals(newGroupIds[i], groupId);
+				}
+			}
+		}
+	}
+
+	// The list keeps one item view type for each row, where the child types follow the group types
+	public void testRebindWithAnotherViewTypeIsNotHandled() {
+		final TestAdapter adapter = new TestAdapter(ids(0, 2), true);
+		final WrapperExpandableListAdapter wrapper = new WrapperExpandableListAdapter(adapter);
+		final int childViewType = wrapper.getGroupTypeCount() + wrapper.getChildType(0, 0);
+
+		assertNull(wrapper.rebindGroupView(0, false, null, childViewType, null, null));
+		assertNull(wrapper.rebindChildView(0, 0, false, null, wrapper.getGroupType(0), null, null));
+		assertEquals(0, adapter.bindCount);
+
+		wrapper.rebindGroupView(0, false, null, wrapper.getGroupType(0), null, null);
+		wrapper.rebindChildView(0, 0, false, null, childViewType, null, null);
+		assertEquals(2, adapter.bindCount);
+	}
+
+	private static long[] ids(int from, int to) {
+		final long[] ids = new long[to - from];
+		for(int i = from; i < to; i++) {
+			ids[i - from] = i;
+		}
+		return ids;
+	}
+
+	// Distinct ids, picked from a small range so the old and the new ones overlap
+	private static long[] randomIds(Random random) {
+		final ArrayList<Long> ids = new ArrayList<Long>();
+		for(long id = 0; id < 15; id++) {
+			if(random.nextBoolean()) {
+				ids.add(random.nextInt(ids.size() + 1), id);
+			}
+		}
+
+		final long[] result = new long[ids.size()];
+		for(int i = 0; i < result.length; i++) {
+			result[i] = ids.get(i);
+		}
+		return result;
+	}
+
+	private static boolean contains(long[] ids, long id) {
+		for(int i = 0; i < ids.length; i++) {
+			if(ids[i] == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class ReplayingListener implements WrapperExpandableListAdapter.OnChangeListener {
+
+		static final long INSERTED = -1;
+
+		private final ArrayList<Long> mGroupIds;
+
+		ReplayingListener(ArrayList<Long> groupIds) {
+			mGroupIds = groupIds;
+		}
+
+		@Override
+		public boolean onGroupPositionsChanged(GroupPositionChange change) {
+			switch(change.type) {
+			case GroupPositionChange.TYPE_INSERTED:
+				for(int i = 0; i < change.value; i++) {
+					mGroupIds.add(change.fromGroupPosition, INSERTED);
+				}
+				break;
+			case GroupPositionChange.TYPE_REMOVED:
+				for(int i = 0; i < change.value; i++) {
+					mGroupIds.remove(change.fromGroupPosition);
+				}
+				break;
+			case GroupPositionChange.TYPE_MOVED:
+				mGroupIds.add(change.value, mGroupIds.remove(change.fromGroupPosition));
+				break;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean onChildrenStructureChanged(int groupPosition) {
+			return true;
+		}
+
+		@Override
+		public boolean onGroupsChanged(int fromGroupPosition, int groupCount, Object payload) {
+			return true;
+		}
+
+		@Override
+		public boolean onChildrenChanged(int groupPosition, int fromChildPosition, int childCount, Object payload) {
+			return true;
+		}
+	}
+
+	private static class TestAdapter extends BaseExpandableListAdapter {
+
+		static final int CHILDREN_COUNT = 3;
+
+		long[] groupIds;
+		final boolean stableIds;
+		int expandedCount;
+		int collapsedCount;
+		int bindCount;
+
+		TestAdapter(long[] groupIds, boolean stableIds) {
+			this.groupIds = groupIds;
+			this.stableIds = stableIds;
+		}
+
+		@Override
+		public int getGroupCount() {
+			return groupIds.length;
+		}
+
+		@Override
+		public int getChildrenCount(int groupPosition) {
+			return CHILDREN_COUNT;
+		}
+
+		@Override
+		public Object getGroup(int groupPosition) {
+			return groupIds[groupPosition];
+		}
+
+		@Override
+		public Object getChild(int groupPosition, int childPosition) {
+			return childPosition;
+		}
+
+		@Override
+		public long getGroupId(int groupPosition) {
+			return groupIds[groupPosition];
+		}
+
+		@Override
+		public long getChildId(int groupPosition, int childPosition) {
+			return childPosition;
+		}
+
+		@Override
+		public boolean hasStableIds() {
+			return stableIds;
+		}
+
+		@Override
+		public View getGroupView(int groupPosition, boolean isExpanded, View convertView, ViewGroup parent) {
+			bindCount++;
+			return null;
+		}
+
+		@Override
+		public View getChildView(int groupPosition, int childPosition, boolean isLastChild, View convertView, ViewGroup parent) {
+			bindCount++;
+			return null;
+		}
+
+		@Override
+		public boolean isChildSelectable(int groupPosition, int childPosition) {
+			return true;
+		}
+
+		@Override
+		public void onGroupExpanded(int groupPosition) {
+			expandedCount++;
+		}
+
+		@Override
+		public void onGroupCollapsed(int groupPosition) {
+			collapsedCount++;
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package android.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+// A plain JVM stand-in for the Log methods the benchmarked classes use
+public final class Log {
+
+	private Log() {
+	}
+
+	public static int w(String tag, String msg) {
+		System.err.println(tag + ": " + msg);
+		return 0;
+	}
+
+	public static String getStackTraceString(Throwable tr) {
+		final StringWriter writer = new StringWriter();
+		tr.printStackTrace(new PrintWriter(writer));
+		return writer.toString();
+	}
+}
@@ -0,0 +1,88 @@
+package android.util;
+
+// A plain JVM stand-in for SparseBooleanArray, with the same int keyed binary search, so the position keyed expansion state the library
+// used to keep can be compared with the id keyed LongSparseBooleanArray
+public class SparseBooleanArray {
+
+	private int[] mKeys;
+	private boolean[] mValues;
+	private int mSize;
+
+	public SparseBooleanArray() {
+		this(10);
+	}
+
+	public SparseBooleanArray(int initialCapacity) {
+		mKeys = new int[initialCapacity];
+		mValues = new boolean[initialCapacity];
+	}
+
+	public boolean get(int key) {
+		return get(key, false);
+	}
+
+	public boolean get(int key, boolean valueIfKeyNotFound) {
+		final int i = binarySearch(key);
+		return i >= 0 ? mValues[i] : valueIfKeyNotFound;
+	}
+
+	public void put(int key, boolean value) {
+		int i = binarySearch(key);
+		if(i >= 0) {
+			mValues[i] = value;
+			return;
+		}
+
+		i = ~i;
+		if(mSize == mKeys.length) {
+			final int newCapacity = Math.max(mSize + 1, mKeys.length * 2);
+			final int[] keys = new int[newCapacity];
+			final boolean[] values = new boolean[newCapacity];
+			System.arraycopy(mKeys, 0, keys, 0, mSize);
+			System.arraycopy(mValues, 0, values, 0, mSize);
+			mKeys = keys;
+			mValues = values;
+		}
+		System.arraycopy(mKeys, i, mKeys, i + 1, mSize - i);
+		System.arraycopy(mValues, i, mValues, i + 1, mSize - i);
+		mKeys[i] = key;
+		mValues[i] = value;
+		mSize++;
+	}
+
+	public void delete(int key) {
+		final int i = binarySearch(key);
+		if(i >= 0) {
+			System.arraycopy(mKeys, i + 1, mKeys, i, mSize - i - 1);
+			System.arraycopy(mValues, i + 1, mValues, i, mSize - i - 1);
+			mSize--;
+		}
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public void clear() {
+		mSize = 0;
+	}
+
+	private int binarySearch(int key) {
+		int low = 0;
+		int high = mSize - 1;
+
+		while(low <= high) {
+			final int mid = (low + high) >>> 1;
+			final int midKey = mKeys[mid];
+
+			if(midKey < key) {
+				low = mid + 1;
+			} else if(midKey > key) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return ~low;
+	}
+}
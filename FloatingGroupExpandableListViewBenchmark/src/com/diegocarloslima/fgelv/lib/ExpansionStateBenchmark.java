@@ -0,0 +1,111 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.util.SparseBooleanArray;
+
+// The expansion state of WrapperExpandableListAdapter, kept by group id in a LongSparseBooleanArray, against the SparseBooleanArray keyed
+// by group position it replaced. Half of the groups are expanded, and the group ids are sparse, as database ids usually are
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpansionStateBenchmark {
+
+	// The groups looked up are cycled through, so they aren't constant folded
+	private static final int POSITION_COUNT = 1024;
+
+	@Param({"100", "1000", "10000"})
+	public int groupCount;
+
+	private long[] mGroupIds;
+	private long[] mExpandedGroupIds;
+	private final LongSparseBooleanArray mGroupIdExpandedMap = new LongSparseBooleanArray();
+	private final SparseBooleanArray mGroupPositionExpandedMap = new SparseBooleanArray();
+	private final int[] mGroupPositions = new int[POSITION_COUNT];
+	private int mNext;
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(0);
+		mGroupIds = new long[groupCount];
+		mExpandedGroupIds = new long[(groupCount + 1) / 2];
+		long groupId = 0;
+		for(int i = 0; i < groupCount; i++) {
+			groupId += 1 + random.nextInt(1000);
+			mGroupIds[i] = groupId;
+			if(i % 2 == 0) {
+				mExpandedGroupIds[i / 2] = groupId;
+				mGroupIdExpandedMap.put(groupId, true);
+				mGroupPositionExpandedMap.put(i, true);
+			}
+		}
+
+		for(int i = 0; i < POSITION_COUNT; i++) {
+			mGroupPositions[i] = random.nextInt(groupCount);
+		}
+	}
+
+	@Benchmark
+	public boolean isGroupExpandedById() {
+		return mGroupIdExpandedMap.get(mGroupIds[nextGroupPosition()], false);
+	}
+
+	@Benchmark
+	public boolean isGroupExpandedByPosition() {
+		return mGroupPositionExpandedMap.get(nextGroupPosition());
+	}
+
+	@Benchmark
+	public int toggleGroupById() {
+		final long groupId = mGroupIds[nextGroupPosition()];
+		if(mGroupIdExpandedMap.get(groupId, false)) {
+			mGroupIdExpandedMap.delete(groupId);
+		} else {
+			mGroupIdExpandedMap.put(groupId, true);
+		}
+		return mGroupIdExpandedMap.size();
+	}
+
+	@Benchmark
+	public int toggleGroupByPosition() {
+		final int groupPosition = nextGroupPosition();
+		if(mGroupPositionExpandedMap.get(groupPosition)) {
+			mGroupPositionExpandedMap.delete(groupPosition);
+		} else {
+			mGroupPositionExpandedMap.put(groupPosition, true);
+		}
+		return mGroupPositionExpandedMap.size();
+	}
+
+	// As the expansion state is rebuilt from the sorted expanded group ids after a data set change
+	@Benchmark
+	public int rebuildById() {
+		Arrays.sort(mExpandedGroupIds);
+		mGroupIdExpandedMap.clear();
+		for(int i = 0; i < mExpandedGroupIds.length; i++) {
+			mGroupIdExpandedMap.append(mExpandedGroupIds[i], true);
+		}
+		return mGroupIdExpandedMap.size();
+	}
+
+	private int nextGroupPosition() {
+		return mGroupPositions[mNext++ & (POSITION_COUNT - 1)];
+	}
+}
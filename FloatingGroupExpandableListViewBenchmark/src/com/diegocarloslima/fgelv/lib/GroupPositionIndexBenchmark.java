@@ -0,0 +1,113 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The group and flat position arithmetic done for the floating group on every scroll, with the Fenwick index and, as a baseline, with a
+// linear walk over the groups. Half of the groups are expanded
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupPositionIndexBenchmark {
+
+	private static final int CHILDREN_COUNT = 10;
+	// The positions looked up are cycled through, so they aren't constant folded
+	private static final int POSITION_COUNT = 1024;
+
+	@Param({"100", "1000", "10000"})
+	public int groupCount;
+
+	private final GroupPositionIndex mIndex = new GroupPositionIndex();
+	private int[] mVisibleChildrenCounts;
+	private final int[] mGroupPositions = new int[POSITION_COUNT];
+	private final int[] mFlatPositions = new int[POSITION_COUNT];
+	private int mNext;
+
+	@Setup
+	public void setUp() {
+		mVisibleChildrenCounts = new int[groupCount];
+		for(int i = 0; i < groupCount; i += 2) {
+			mVisibleChildrenCounts[i] = CHILDREN_COUNT;
+		}
+		mIndex.build(mVisibleChildrenCounts, groupCount);
+
+		final Random random = new Random(0);
+		final int flatCount = mIndex.getFlatCount();
+		for(int i = 0; i < POSITION_COUNT; i++) {
+			mGroupPositions[i] = random.nextInt(groupCount);
+			mFlatPositions[i] = random.nextInt(flatCount);
+		}
+	}
+
+	@Benchmark
+	public int getGroupFlatPosition() {
+		return mIndex.getGroupFlatPosition(nextGroupPosition());
+	}
+
+	@Benchmark
+	public int getGroupFlatPositionLinear() {
+		final int groupPosition = nextGroupPosition();
+		int flatPosition = 0;
+		for(int i = 0; i < groupPosition; i++) {
+			flatPosition += 1 + mVisibleChildrenCounts[i];
+		}
+		return flatPosition;
+	}
+
+	@Benchmark
+	public int getGroupForFlatPosition() {
+		return mIndex.getGroupForFlatPosition(nextFlatPosition());
+	}
+
+	@Benchmark
+	public int getGroupForFlatPositionLinear() {
+		final int flatPosition = nextFlatPosition();
+		int groupFlatPosition = 0;
+		for(int i = 0; i < groupCount; i++) {
+			groupFlatPosition += 1 + mVisibleChildrenCounts[i];
+			if(flatPosition < groupFlatPosition) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// Expands or collapses a group, as the index is updated when a group is toggled
+	@Benchmark
+	public int toggleGroup() {
+		final int groupPosition = nextGroupPosition();
+		final int visibleChildrenCount = mIndex.getVisibleChildrenCount(groupPosition) == 0 ? CHILDREN_COUNT : 0;
+		mIndex.setVisibleChildrenCount(groupPosition, visibleChildrenCount);
+		return visibleChildrenCount;
+	}
+
+	// As done after each data set change
+	@Benchmark
+	public int build() {
+		mIndex.build(mVisibleChildrenCounts, groupCount);
+		return mIndex.getGroupCount();
+	}
+
+	private int nextGroupPosition() {
+		return mGroupPositions[mNext++ & (POSITION_COUNT - 1)];
+	}
+
+	private int nextFlatPosition() {
+		return mFlatPositions[mNext++ & (POSITION_COUNT - 1)];
+	}
+}
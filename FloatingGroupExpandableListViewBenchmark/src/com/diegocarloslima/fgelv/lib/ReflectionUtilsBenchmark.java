@@ -0,0 +1,65 @@
+package com.diegocarloslima.fgelv.lib;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The cached field and method lookups of ReflectionUtils against looking the members up on each access, as the list did before. The
+// JVM's reflection is much faster than Dalvik's, so only the relative cost is meaningful here
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectionUtilsBenchmark {
+
+	private static final Class<?>[] ADD_PARAMETERS = new Class<?>[]{int.class};
+
+	private final Target mTarget = new Target();
+
+	@Benchmark
+	public int getIntCached() {
+		return ReflectionUtils.getInt(Target.class, "mValue", mTarget, -1);
+	}
+
+	@Benchmark
+	public int getIntUncached() throws Exception {
+		final Field field = Target.class.getDeclaredField("mValue");
+		field.setAccessible(true);
+		return field.getInt(mTarget);
+	}
+
+	@Benchmark
+	public Object invokeMethodCached() {
+		return ReflectionUtils.invokeMethod(Target.class, "add", ADD_PARAMETERS, mTarget, 1);
+	}
+
+	@Benchmark
+	public Object invokeMethodUncached() throws Exception {
+		final Method method = Target.class.getDeclaredMethod("add", ADD_PARAMETERS);
+		method.setAccessible(true);
+		return method.invoke(mTarget, 1);
+	}
+
+	private static class Target {
+
+		private int mValue;
+
+		@SuppressWarnings("unused")
+		private int add(int value) {
+			mValue += value;
+			return mValue;
+		}
+	}
+}
@@ -5,7 +5,6 @@ import android.content.Intent;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
 import android.graphics.drawable.ColorDrawable;
-import android.graphics.drawable.Drawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.view.LayoutInflater;
@@ -50,44 +49,54 @@ public class SampleActivity extends Activity {
 		final WrapperExpandableListAdapter wrapperAdapter = new WrapperExpandableListAdapter(adapter);
 		list.setAdapter(wrapperAdapter);
 		
-		for(int i = 0; i < wrapperAdapter.getGroupCount(); i++) {
-			list.expandGroup(i);
-		}
+		list.expandAllGroups();
 		
-		list.setOnScrollFloatingGroupListener(new FloatingGroupExpandableListView.OnScrollFloatingGroupListener() {
-			
+		list.setOnFloatingGroupScrollChangedListener(new FloatingGroupExpandableListView.OnFloatingGroupScrollChangedListener() {
+
 			@Override
-			public void onScrollFloatingGroupListener(View floatingGroupView, int scrollY) {
-				float interpolation = - scrollY / (float) floatingGroupView.getHeight();
-				
+			public Object onCreateFloatingGroupHolder(View floatingGroupView) {
+				return new FloatingGroupHolder(floatingGroupView);
+			}
+
+			@Override
+			public void onFloatingGroupScrollChanged(View floatingGroupView, Object holder, int groupPosition, float pushOutFraction, int scrollY) {
+				final FloatingGroupHolder floatingGroupHolder = (FloatingGroupHolder) holder;
+
 				// Changing from RGB(162,201,85) to RGB(255,255,255)
-				final int greenToWhiteRed = (int) (162 + 93 * interpolation);
-				final int greenToWhiteGreen = (int) (201 + 54 * interpolation);
-				final int greenToWhiteBlue = (int) (85 + 170 * interpolation);
+				final int greenToWhiteRed = (int) (162 + 93 * pushOutFraction);
+				final int greenToWhiteGreen = (int) (201 + 54 * pushOutFraction);
+				final int greenToWhiteBlue = (int) (85 + 170 * pushOutFraction);
 				final int greenToWhiteColor = Color.argb(255, greenToWhiteRed, greenToWhiteGreen, greenToWhiteBlue);
 				
 				// Changing from RGB(255,255,255) to RGB(0,0,0)
-				final int whiteToBlackRed = (int) (255 - 255 * interpolation);
-				final int whiteToBlackGreen = (int) (255 - 255 * interpolation);
-				final int whiteToBlackBlue = (int) (255 - 255 * interpolation);
+				final int whiteToBlackRed = (int) (255 - 255 * pushOutFraction);
+				final int whiteToBlackGreen = (int) (255 - 255 * pushOutFraction);
+				final int whiteToBlackBlue = (int) (255 - 255 * pushOutFraction);
 				final int whiteToBlackColor = Color.argb(255, whiteToBlackRed, whiteToBlackGreen, whiteToBlackBlue);
 				
-				final ImageView image = (ImageView) floatingGroupView.findViewById(R.id.sample_activity_list_group_item_image);
-				image.setBackgroundColor(greenToWhiteColor);
-				
-				final Drawable imageDrawable = image.getDrawable().mutate();
-				imageDrawable.setColorFilter(whiteToBlackColor, PorterDuff.Mode.SRC_ATOP);
-				
-				final View background = floatingGroupView.findViewById(R.id.sample_activity_list_group_item_background);
-				background.setBackgroundColor(greenToWhiteColor);
-				
-				final TextView text = (TextView) floatingGroupView.findViewById(R.id.sample_activity_list_group_item_text);
-				text.setTextColor(whiteToBlackColor);
-				
-				final ImageView expanded = (ImageView) floatingGroupView.findViewById(R.id.sample_activity_list_group_expanded_image);
-				final Drawable expandedDrawable = expanded.getDrawable().mutate();
-				expandedDrawable.setColorFilter(whiteToBlackColor, PorterDuff.Mode.SRC_ATOP);
+				floatingGroupHolder.image.setBackgroundColor(greenToWhiteColor);
+				floatingGroupHolder.image.setColorFilter(whiteToBlackColor, PorterDuff.Mode.SRC_ATOP);
+				floatingGroupHolder.background.setBackgroundColor(greenToWhiteColor);
+				floatingGroupHolder.text.setTextColor(whiteToBlackColor);
+				floatingGroupHolder.expanded.setColorFilter(whiteToBlackColor, PorterDuff.Mode.SRC_ATOP);
 			}
 		});
 	}
+
+	// The child views of the floating group are only looked up once. The color filters are set on the ImageViews, so they are kept
+	// when the adapter sets another image on them
+	private static class FloatingGroupHolder {
+
+		final ImageView image;
+		final View background;
+		final TextView text;
+		final ImageView expanded;
+
+		FloatingGroupHolder(View floatingGroupView) {
+			image = (ImageView) floatingGroupView.findViewById(R.id.sample_activity_list_group_item_image);
+			background = floatingGroupView.findViewById(R.id.sample_activity_list_group_item_background);
+			text = (TextView) floatingGroupView.findViewById(R.id.sample_activity_list_group_item_text);
+			expanded = (ImageView) floatingGroupView.findViewById(R.id.sample_activity_list_group_expanded_image);
+		}
+	}
 }